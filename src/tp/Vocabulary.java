@@ -1,17 +1,16 @@
 package tp;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Locale;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.HashSet;
 
 public class Vocabulary {
 
 	public ArrayList<String> vocabulary;
+	private HashSet<String> known;
 	
 	public Vocabulary() {
 		vocabulary = new ArrayList<String>();
+		known = new HashSet<String>();
 	}
 	
 	/*
@@ -19,7 +18,7 @@ public class Vocabulary {
 	 */
 	public void getVocabulary(String[] tokens) {
 		for (String token : tokens) {
-			if(!vocabulary.contains(token)) {
+			if(known.add(token)) {
 				vocabulary.add(token);
 			}
 		}
@@ -0,0 +1,154 @@
+package tp2.evaluation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Vector;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import tp2.searchEngine.DocumentInfo;
+import tp2.searchEngine.utils.CollectionReader;
+
+/**
+ * Measures the parsing throughput of the TREC collection files, in MB/s, with
+ * the CollectionReader and with the former handler which rebuilt the text of
+ * the current element with String concatenations on every SAX callback.
+ * Both handlers must read the same documents, which is checked on each file.
+ *
+ * Use: java CollectionParsingBenchmark [rounds] [collection_file ...]
+ * Without files, the collections of the evaluation directory are parsed.
+ */
+public class CollectionParsingBenchmark {
+
+	private static final String[] COLLECTIONS = { "cacm", "cisi", "cran", "lisa", "med", "time" };
+
+	private static final int DEFAULT_ROUNDS = 5;
+
+	/*
+	 * The text accumulation of CollectionReader before it used a reusable
+	 * buffer: the whole SAX buffer is copied and the text is concatenated and
+	 * trimmed on every call to characters
+	 */
+	private static class LegacyCollectionReader extends DefaultHandler {
+
+		Vector<DocumentInfo> database = new Vector<DocumentInfo>();
+		DocumentInfo currentDocumentInfo;
+		String currentData;
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes atts) {
+			if (qName.equals("DOC")) {
+				currentDocumentInfo = new DocumentInfo();
+			} else if (qName.equals("DOCID") || qName.equals("TEXT")) {
+				currentData = null;
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			if (qName.equals("DOC")) {
+				database.add(currentDocumentInfo);
+				currentDocumentInfo = null;
+			} else if (qName.equals("DOCID")) {
+				currentDocumentInfo.setId(Integer.parseInt(currentData));
+				currentData = null;
+			} else if (qName.equals("TEXT")) {
+				currentDocumentInfo.setContent(currentData);
+				currentData = null;
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			if (currentData == null) {
+				currentData = new String(ch).substring(start, start + length).trim();
+			} else {
+				currentData += " " + new String(ch).substring(start, start + length);
+				currentData = currentData.trim();
+			}
+		}
+	}
+
+	private static Vector<DocumentInfo> parseLegacy(File file) throws Exception {
+		XMLReader parser = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+		LegacyCollectionReader handler = new LegacyCollectionReader();
+		parser.setContentHandler(handler);
+		parser.parse(file.toURI().toString());
+		return handler.database;
+	}
+
+	private static Vector<DocumentInfo> parseCurrent(File file) throws Exception {
+		XMLReader parser = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+		CollectionReader handler = new CollectionReader();
+		parser.setContentHandler(handler);
+		parser.parse(file.toURI().toString());
+		return handler.getDatabase();
+	}
+
+	private static void checkSameDocuments(File file, Vector<DocumentInfo> expected, Vector<DocumentInfo> actual)
+			throws SAXException {
+		boolean same = expected.size() == actual.size();
+		for (int i = 0; same && i < expected.size(); i++) {
+			same = expected.get(i).getId() == actual.get(i).getId()
+					&& String.valueOf(expected.get(i).getContent()).equals(String.valueOf(actual.get(i).getContent()));
+		}
+		if (!same) {
+			throw new SAXException("Handlers disagree on the documents of " + file.getPath());
+		}
+	}
+
+	/*
+	 * Best throughput over the rounds, in MB/s
+	 */
+	private static double measure(File file, int rounds, boolean legacy) throws Exception {
+		double best = 0;
+		for (int round = 0; round < rounds; round++) {
+			long start = System.nanoTime();
+			Vector<DocumentInfo> database = legacy ? parseLegacy(file) : parseCurrent(file);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			if (database.isEmpty()) {
+				throw new SAXException("No document found in " + file.getPath());
+			}
+			best = Math.max(best, file.length() / (1024.0 * 1024.0) / seconds);
+		}
+		return best;
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		int rounds = DEFAULT_ROUNDS;
+		ArrayList<File> files = new ArrayList<File>();
+		for (String arg : args) {
+			if (arg.matches("\\d+")) {
+				rounds = Integer.parseInt(arg);
+			} else {
+				files.add(new File(arg));
+			}
+		}
+		if (files.isEmpty()) {
+			for (String collection : COLLECTIONS) {
+				files.add(new File("evaluation/" + collection + "/" + collection + ".trec"));
+			}
+		}
+
+		System.out.println(String.format(Locale.ROOT, "%-40s %10s %12s %12s %8s", "collection", "MB", "legacy MB/s",
+				"reader MB/s", "speedup"));
+		for (File file : files) {
+			if (!file.isFile()) {
+				System.err.println("Skipping " + file.getPath() + ": file not found");
+				continue;
+			}
+			checkSameDocuments(file, parseLegacy(file), parseCurrent(file));
+			double legacy = measure(file, rounds, true);
+			double current = measure(file, rounds, false);
+			System.out.println(String.format(Locale.ROOT, "%-40s %10.2f %12.2f %12.2f %7.2fx", file.getPath(),
+					file.length() / (1024.0 * 1024.0), legacy, current, current / legacy));
+		}
+	}
+}
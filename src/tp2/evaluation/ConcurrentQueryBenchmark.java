@@ -0,0 +1,142 @@
+package tp2.evaluation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import tp2.searchEngine.DocumentInfo;
+import tp2.searchEngine.SearchEngineImpl;
+
+/**
+ * Stress test of the concurrent queries: for each similarity and evaluation
+ * strategy, the queries are first run one after the other to get the expected
+ * rankings, then run many times in a random order by a pool of threads
+ * querying the same engine at once. Every concurrent ranking and number of
+ * scored documents must be the one of the serial run, a query failing with an
+ * exception counting as a mismatch. The throughput of both runs is reported,
+ * and the exit status is 1 if any result differs.
+ *
+ * Use: java ConcurrentQueryBenchmark [threads] [rounds] [collection_file] [query_file]
+ * By default, one thread per processor runs each query 20 times on CACM.
+ */
+public class ConcurrentQueryBenchmark {
+
+	private static final String COLLECTION = "evaluation/cacm/cacm.trec";
+
+	private static final String QUERIES = "evaluation/cacm/cacm.qry";
+
+	private static final String QRY_REGEX_PATTERN = "^\\s*(\\d+)\\s+(.+)$";
+
+	private static final int DEFAULT_ROUNDS = 20;
+
+	private static final int K = 100;
+
+	private static final String[] SIMILARITIES = { "DICE", "VECTOR", "VECTORIDF", "NONORM" };
+
+	private static final String[] STRATEGIES = { "TAAT", "WAND", "BMW", "MAXSCORE" };
+
+	private static List<String> readQueries(String path) throws IOException {
+		Matcher matcher = Pattern.compile(QRY_REGEX_PATTERN).matcher("");
+		ArrayList<String> queries = new ArrayList<String>();
+		for (String line : Files.readAllLines(Paths.get(path), StandardCharsets.ISO_8859_1)) {
+			if (matcher.reset(line).matches()) {
+				queries.add(matcher.group(2));
+			}
+		}
+		return queries;
+	}
+
+	/*
+	 * IDs of the ranked documents followed by the number of scored documents
+	 */
+	private static List<Integer> run(SearchEngineImpl engine, String query) {
+		ArrayList<Integer> result = new ArrayList<Integer>();
+		for (DocumentInfo document : engine.queryDatabase(query, K)) {
+			result.add(document.getId());
+		}
+		result.add(engine.getDocumentsScored());
+		return result;
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+		String collection = args.length > 2 ? args[2] : COLLECTION;
+		List<String> queries = readQueries(args.length > 3 ? args[3] : QUERIES);
+
+		SearchEngineImpl engine = new SearchEngineImpl();
+		engine.loadDatabaseFile(collection);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Random random = new Random(42);
+		int totalMismatches = 0;
+
+		System.out.println(String.format(Locale.ROOT, "%d documents, %d queries, %d threads, %d rounds",
+				engine.getDatabase().size(), queries.size(), threads, rounds));
+		System.out.println(String.format(Locale.ROOT, "%-10s %-9s %10s %14s %14s %11s", "similarity", "strategy",
+				"queries", "serial q/s", "parallel q/s", "mismatches"));
+		for (int similarity = 0; similarity < SIMILARITIES.length; similarity++) {
+			for (int strategy = 0; strategy < STRATEGIES.length; strategy++) {
+				engine.setSimilarityType(similarity);
+				engine.setEvaluationStrategy(strategy);
+
+				final List<List<Integer>> expected = new ArrayList<List<Integer>>();
+				long start = System.nanoTime();
+				for (String query : queries) {
+					expected.add(run(engine, query));
+				}
+				double serial = queries.size() / ((System.nanoTime() - start) / 1e9);
+
+				List<Integer> order = new ArrayList<Integer>();
+				for (int round = 0; round < rounds; round++) {
+					for (int q = 0; q < queries.size(); q++) {
+						order.add(q);
+					}
+				}
+				Collections.shuffle(order, random);
+				final AtomicInteger mismatches = new AtomicInteger();
+				List<Future<?>> futures = new ArrayList<Future<?>>(order.size());
+				start = System.nanoTime();
+				for (final int q : order) {
+					final String query = queries.get(q);
+					futures.add(pool.submit(() -> {
+						try {
+							if (!run(engine, query).equals(expected.get(q))) {
+								mismatches.incrementAndGet();
+							}
+						} catch (RuntimeException e) {
+							if (mismatches.incrementAndGet() == 1) {
+								e.printStackTrace();
+							}
+						}
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+				double parallel = order.size() / ((System.nanoTime() - start) / 1e9);
+
+				totalMismatches += mismatches.get();
+				System.out.println(String.format(Locale.ROOT, "%-10s %-9s %10d %14.0f %14.0f %11d",
+						SIMILARITIES[similarity], STRATEGIES[strategy], order.size(), serial, parallel,
+						mismatches.get()));
+			}
+		}
+		pool.shutdown();
+		System.out.println(totalMismatches == 0 ? "all concurrent results match the serial ones"
+				: totalMismatches + " concurrent results differ from the serial ones");
+		System.exit(totalMismatches == 0 ? 0 : 1);
+	}
+}
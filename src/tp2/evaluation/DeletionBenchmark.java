@@ -0,0 +1,176 @@
+package tp2.evaluation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import tp2.searchEngine.DocumentInfo;
+import tp2.searchEngine.SearchEngineImpl;
+
+/**
+ * Measures the query latency after deleting documents. The collection is
+ * indexed three times: the first index keeps all the documents, a random part
+ * of the documents is deleted from the other two, and the second index is
+ * saved, which drops the postings of the deleted documents, while the third
+ * one keeps them, skipped by the cursors. The queries are timed on the three
+ * indexes in turn for each similarity and evaluation strategy. The rankings
+ * with the pending deletions must be the ones of the saved index, the exit
+ * status is 1 if any differs.
+ *
+ * Use: java DeletionBenchmark [deleted_percent] [rounds] [collection_file] [query_file]
+ * By default, 10% of the CACM documents are deleted and the best time over
+ * 10 rounds is kept.
+ */
+public class DeletionBenchmark {
+
+	private static final String COLLECTION = "evaluation/cacm/cacm.trec";
+
+	private static final String QUERIES = "evaluation/cacm/cacm.qry";
+
+	private static final String QRY_REGEX_PATTERN = "^\\s*(\\d+)\\s+(.+)$";
+
+	private static final int DEFAULT_DELETED_PERCENT = 10;
+
+	private static final int DEFAULT_ROUNDS = 10;
+
+	private static final int K = 10;
+
+	private static final String[] SIMILARITIES = { "DICE", "VECTOR", "VECTORIDF", "NONORM" };
+
+	private static final String[] STRATEGIES = { "TAAT", "WAND", "BMW", "MAXSCORE" };
+
+	private static List<String> readQueries(String path) throws IOException {
+		Matcher matcher = Pattern.compile(QRY_REGEX_PATTERN).matcher("");
+		ArrayList<String> queries = new ArrayList<String>();
+		for (String line : Files.readAllLines(Paths.get(path), StandardCharsets.ISO_8859_1)) {
+			if (matcher.reset(line).matches()) {
+				queries.add(matcher.group(2));
+			}
+		}
+		return queries;
+	}
+
+	/*
+	 * Best time to run all the queries over the rounds, in milliseconds, for
+	 * every engine, similarity and strategy, the engines being timed in turn
+	 */
+	private static double[][][] measure(SearchEngineImpl[] engines, List<String> queries, int rounds) {
+		double[][][] times = new double[engines.length][SIMILARITIES.length][STRATEGIES.length];
+		for (int similarity = 0; similarity < SIMILARITIES.length; similarity++) {
+			for (int strategy = 0; strategy < STRATEGIES.length; strategy++) {
+				for (int e = 0; e < engines.length; e++) {
+					engines[e].setSimilarityType(similarity);
+					engines[e].setEvaluationStrategy(strategy);
+					times[e][similarity][strategy] = Double.MAX_VALUE;
+				}
+				for (int round = 0; round < rounds; round++) {
+					for (int e = 0; e < engines.length; e++) {
+						long start = System.nanoTime();
+						for (String query : queries) {
+							engines[e].queryDatabase(query, K);
+						}
+						times[e][similarity][strategy] = Math.min(times[e][similarity][strategy],
+								(System.nanoTime() - start) / 1e6);
+					}
+				}
+			}
+		}
+		return times;
+	}
+
+	/*
+	 * IDs of the documents ranked by every query for every similarity and strategy
+	 */
+	private static List<List<Integer>> rankings(SearchEngineImpl engine, List<String> queries) {
+		List<List<Integer>> rankings = new ArrayList<List<Integer>>();
+		for (int similarity = 0; similarity < SIMILARITIES.length; similarity++) {
+			for (int strategy = 0; strategy < STRATEGIES.length; strategy++) {
+				engine.setSimilarityType(similarity);
+				engine.setEvaluationStrategy(strategy);
+				for (String query : queries) {
+					ArrayList<Integer> ranking = new ArrayList<Integer>();
+					for (DocumentInfo document : engine.queryDatabase(query, K)) {
+						ranking.add(document.getId());
+					}
+					rankings.add(ranking);
+				}
+			}
+		}
+		return rankings;
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		int percent = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DELETED_PERCENT;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+		String collection = args.length > 2 ? args[2] : COLLECTION;
+		List<String> queries = readQueries(args.length > 3 ? args[3] : QUERIES);
+
+		SearchEngineImpl before = new SearchEngineImpl();
+		before.loadDatabaseFile(collection);
+		SearchEngineImpl saved = new SearchEngineImpl();
+		saved.loadDatabaseFile(collection);
+		SearchEngineImpl pending = new SearchEngineImpl();
+		pending.loadDatabaseFile(collection);
+
+		List<Integer> ids = new ArrayList<Integer>();
+		for (DocumentInfo document : before.getDatabase()) {
+			ids.add(document.getId());
+		}
+		Collections.shuffle(ids, new Random(42));
+		List<Integer> deleted = ids.subList(0, ids.size() * percent / 100);
+		for (int id : deleted) {
+			saved.deleteDocument(id);
+		}
+		Path index = Files.createTempFile("deletion", ".idx");
+		try {
+			saved.saveIndex(index);
+		} finally {
+			Files.deleteIfExists(index);
+		}
+		long start = System.nanoTime();
+		for (int id : deleted) {
+			pending.deleteDocument(id);
+		}
+		double deletion = (System.nanoTime() - start) / 1e3 / Math.max(1, deleted.size());
+
+		List<List<Integer>> expected = rankings(saved, queries);
+		List<List<Integer>> actual = rankings(pending, queries);
+		int mismatches = 0;
+		for (int i = 0; i < expected.size(); i++) {
+			if (!expected.get(i).equals(actual.get(i))) {
+				mismatches++;
+			}
+		}
+
+		SearchEngineImpl[] engines = { before, pending, saved };
+		// warm-up, so that the first measures are not the ones of the interpreter
+		measure(engines, queries, rounds);
+		double[][][] times = measure(engines, queries, rounds);
+
+		System.out.println(String.format(Locale.ROOT, "%d documents, %d deleted (%d%%) in %.1f us each, %d queries, k=%d",
+				ids.size(), deleted.size(), percent, deletion, queries.size(), K));
+		System.out.println(String.format(Locale.ROOT, "%-10s %-9s %11s %11s %11s %9s", "similarity", "strategy",
+				"before ms", "pending ms", "saved ms", "overhead"));
+		for (int similarity = 0; similarity < SIMILARITIES.length; similarity++) {
+			for (int strategy = 0; strategy < STRATEGIES.length; strategy++) {
+				System.out.println(String.format(Locale.ROOT, "%-10s %-9s %11.2f %11.2f %11.2f %8.1f%%",
+						SIMILARITIES[similarity], STRATEGIES[strategy], times[0][similarity][strategy],
+						times[1][similarity][strategy], times[2][similarity][strategy],
+						100 * (times[1][similarity][strategy] / times[2][similarity][strategy] - 1)));
+			}
+		}
+		System.out.println(mismatches == 0 ? "rankings with pending deletions match the saved index"
+				: mismatches + " rankings with pending deletions differ from the saved index");
+		System.exit(mismatches == 0 ? 0 : 1);
+	}
+}
@@ -3,6 +3,9 @@ package tp2.evaluation;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Vector;
@@ -210,8 +213,16 @@ public class GlobalEvaluationAndOutput {
 			databaseFilePath = "evaluation/" + file.getKey() + "/" + file.getKey() + ".trec";
 			queryFile = "evaluation/" + file.getKey() + "/" + file.getKey() + ".qry";
 			groundTruthFile = "evaluation/" + file.getKey() + "/" + file.getKey() + ".qrel";
-
-			se.loadDatabaseFile(databaseFilePath);
+			Path indexPath = Paths.get("evaluation/" + file.getKey() + "/" + file.getKey() + ".idx");
+
+			// reuse the index saved by a previous run unless the collection changed
+			if (Files.exists(indexPath) && Files.getLastModifiedTime(indexPath)
+					.compareTo(Files.getLastModifiedTime(Paths.get(databaseFilePath))) > 0) {
+				se.openIndex(indexPath);
+			} else {
+				se.loadDatabaseFile(databaseFilePath);
+				se.saveIndex(indexPath);
+			}
 			see.readGroundTruthFile(groundTruthFile);
 			see.readQueryFile(queryFile);
 
@@ -0,0 +1,47 @@
+package tp2.evaluation;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import tp2.searchEngine.SearchEngineImpl;
+
+/**
+ * Checks the segment file written by saveIndex: the collection is indexed and
+ * saved, the file is opened, mapped, and saved again, and the second file
+ * must have exactly the bytes of the first one. The sizes of both files are
+ * reported, and the exit status is 1 if they differ.
+ *
+ * Use: java IndexFileCheck [collection_file]
+ * By default, the CACM collection is indexed.
+ */
+public class IndexFileCheck {
+
+	private static final String COLLECTION = "evaluation/cacm/cacm.trec";
+
+	public static void main(String[] args) throws Exception {
+
+		String collection = args.length > 0 ? args[0] : COLLECTION;
+		Path saved = Files.createTempFile("saved", ".idx");
+		Path resaved = Files.createTempFile("resaved", ".idx");
+		try {
+			SearchEngineImpl engine = new SearchEngineImpl();
+			engine.loadDatabaseFile(collection);
+			engine.saveIndex(saved);
+
+			SearchEngineImpl reopened = new SearchEngineImpl();
+			reopened.openIndex(saved);
+			reopened.saveIndex(resaved);
+
+			byte[] expected = Files.readAllBytes(saved);
+			byte[] actual = Files.readAllBytes(resaved);
+			boolean same = Arrays.equals(expected, actual);
+			System.out.println("saved " + expected.length + " bytes, saved again after opening " + actual.length
+					+ " bytes" + (same ? ", identical" : ", different"));
+			System.exit(same ? 0 : 1);
+		} finally {
+			Files.deleteIfExists(saved);
+			Files.deleteIfExists(resaved);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package tp2.evaluation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import tp2.searchEngine.utils.Stemmer;
+import tp2.searchEngine.utils.Tokenizer;
+import tp2.searchEngine.utils.stemmer.org.tartarus.snowball.SnowballStemmer;
+
+/**
+ * Measures the cost of the Snowball stemmers, without stem cache: the time to
+ * stem a token for English and French, and the time to create a stemmer with
+ * its constructor compared to the former reflective instantiation through
+ * Class.forName.
+ *
+ * Use: java StemmingBenchmark [rounds] [english_text_file] [french_text_file]
+ * By default the English tokens are taken from the CACM queries and the French
+ * ones from the French stop-list.
+ */
+public class StemmingBenchmark {
+
+	private static final String ENGLISH_TEXT = "evaluation/cacm/cacm.qry";
+
+	private static final String FRENCH_TEXT = "data/stopListFrancais.txt";
+
+	private static final int DEFAULT_ROUNDS = 20;
+
+	private static final int INSTANTIATIONS = 10000;
+
+	// sink of the benchmarked results, so the JIT cannot drop the calls
+	private static long checksum;
+
+	private static String[] readTokens(String path) throws IOException {
+		// the stop-lists are in Latin-1
+		String text = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.ISO_8859_1);
+		Tokenizer tokenizer = new Tokenizer(" ,.;:()'\"<>?!\n\r\t0123456789");
+		ArrayList<String> tokens = new ArrayList<String>();
+		Tokenizer.TokenStream stream = tokenizer.tokenStream(true).reset(text);
+		while (stream.next()) {
+			tokens.add(stream.term());
+		}
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	/*
+	 * Best time per token over the rounds, in nanoseconds
+	 */
+	private static double measureStemming(Stemmer.StemmerLanguage language, String[] tokens, int rounds) {
+		Stemmer stemmer = new Stemmer(language);
+		double best = Double.MAX_VALUE;
+		for (int round = 0; round < rounds; round++) {
+			long start = System.nanoTime();
+			for (String token : tokens) {
+				checksum += stemmer.stem(token).length();
+			}
+			best = Math.min(best, (double) (System.nanoTime() - start) / tokens.length);
+		}
+		return best;
+	}
+
+	/*
+	 * Time per instantiation of a stemmer, in nanoseconds, by reflection or with
+	 * the constructor used by Stemmer
+	 */
+	private static double measureInstantiation(Stemmer.StemmerLanguage language, String className, boolean reflective)
+			throws ReflectiveOperationException {
+		double best = Double.MAX_VALUE;
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < INSTANTIATIONS; i++) {
+				if (reflective) {
+					SnowballStemmer stemmer = (SnowballStemmer) Class.forName(className).getConstructor().newInstance();
+					checksum += stemmer.hashCode();
+				} else {
+					checksum += new Stemmer(language).hashCode();
+				}
+			}
+			best = Math.min(best, (double) (System.nanoTime() - start) / INSTANTIATIONS);
+		}
+		return best;
+	}
+
+	private static void report(Stemmer.StemmerLanguage language, String className, String[] tokens, int rounds)
+			throws ReflectiveOperationException {
+		double stem = measureStemming(language, tokens, rounds);
+		double reflective = measureInstantiation(language, className, true);
+		double direct = measureInstantiation(language, className, false);
+		System.out.println(String.format(Locale.ROOT, "%-8s %8d %12.1f %16.1f %14.1f", language, tokens.length, stem,
+				reflective, direct));
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		int rounds = DEFAULT_ROUNDS;
+		ArrayList<String> files = new ArrayList<String>();
+		for (String arg : args) {
+			if (arg.matches("\\d+")) {
+				rounds = Integer.parseInt(arg);
+			} else {
+				files.add(arg);
+			}
+		}
+		String[] english = readTokens(files.size() > 0 ? files.get(0) : ENGLISH_TEXT);
+		String[] french = readTokens(files.size() > 1 ? files.get(1) : FRENCH_TEXT);
+
+		System.out.println(String.format(Locale.ROOT, "%-8s %8s %12s %16s %14s", "language", "tokens", "ns/token",
+				"ns/reflective", "ns/new"));
+		report(Stemmer.StemmerLanguage.ENGLISH, "tp2.searchEngine.utils.stemmer.org.tartarus.snowball.ext.porterStemmer",
+				english, rounds);
+		report(Stemmer.StemmerLanguage.FRENCH, "tp2.searchEngine.utils.stemmer.org.tartarus.snowball.ext.frenchStemmer",
+				french, rounds);
+		System.out.println("checksum " + checksum);
+	}
+}
@@ -3,6 +3,7 @@ package tp2.gui;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Graphics;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -33,7 +34,9 @@ public class DocumentBrowser extends JPanel implements ActionListener, MouseList
 
 	/**
 	 * Inner class providing a text area to display a part of a document in the list
-	 * of available documents
+	 * of available documents. The content of the document is only read when the
+	 * entry is first painted, that is scrolled into view, and only its first
+	 * lines are kept.
 	 * 
 	 * @author Pierre Tirilly - pierre.tirilly@telecom-lille.fr
 	 *
@@ -45,13 +48,28 @@ public class DocumentBrowser extends JPanel implements ActionListener, MouseList
 		 */
 		private DocumentInfo docInfo;
 		
+		/**
+		 * Whether the first lines of the document are set as the text of the entry
+		 */
+		private boolean loaded;
+		
 		/**
 		 * Constructor of a new list entry
 		 * @param docInfo Document to be displayed in the entry
 		 */
 		public DocumentEntry( DocumentInfo docInfo ) {
-			super( docInfo.getContent() );
+			super();
 			this.docInfo = docInfo;
+			this.loaded = false;
+		}
+		
+		@Override
+		protected void paintComponent( Graphics g ) {
+			if ( !this.loaded ) {
+				this.loaded = true;
+				this.setText( firstLines( this.docInfo.getContent(), PREVIEW_LINES ) );
+			}
+			super.paintComponent( g );
 		}
 		
 		/**
@@ -73,6 +91,7 @@ public class DocumentBrowser extends JPanel implements ActionListener, MouseList
 	private static final int ENTRY_BORDER_THICKNESS = 1;
 	private static final int BROWSER_BORDER_THICKNESS = 5;
 	private static final Color ENTRY_BORDER_COLOR = Color.BLACK; 
+	private static final int PREVIEW_LINES = 4;
 
 	/**
 	 * Vector of the documents being displayed
@@ -196,6 +215,18 @@ public class DocumentBrowser extends JPanel implements ActionListener, MouseList
 		this.listPanel.add( Box.createVerticalStrut( INTER_DOCUMENT_STRUT_HEIGHT ) );
 	}
 	
+	// returns the given number of first lines of a text
+	private static String firstLines( String text, int lines ) {
+		int end = -1;
+		for ( int i = 0 ; i < lines ; i++ ) {
+			end = text.indexOf( '\n', end + 1 );
+			if ( end < 0 ) {
+				return text;
+			}
+		}
+		return text.substring( 0, end );
+	}
+	
 	/**
 	 * Updates the size of the panel
 	 * @param width The width of the panel
@@ -193,7 +193,7 @@ public class SearchEngineUI extends JFrame implements ActionListener, ComponentL
 			}
 			
 			protected void done() {
-				documentBrowser.setDisplayedDocuments( searchEngine.getDatabase() );
+				documentBrowser.setDisplayedDocuments( searchEngine.getLiveDocuments() );
 				queryField.setEnabled( searchEngine.getDatabase() != null );
 				queryButton.setEnabled( searchEngine.getDatabase() != null );
 				repaint();
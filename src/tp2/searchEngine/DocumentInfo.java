@@ -30,11 +30,11 @@ public class DocumentInfo {
     /**
      * Builds a new DocumentInfo with given ID and content.
      * @param id The ID of the new document.
-     * @param content The content of the new document. The string is copied in memory.
+     * @param content The content of the new document. Strings being immutable, it is not copied.
      */
     public DocumentInfo(int id, String content) {
     	this.id = id;
-    	this.content = new String(content);
+    	this.content = content;
     }
     
     /**
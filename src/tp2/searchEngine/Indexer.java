@@ -0,0 +1,319 @@
+package tp2.searchEngine;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import tp2.searchEngine.index.CompressedPostings;
+import tp2.searchEngine.index.ForwardIndex;
+import tp2.searchEngine.index.PostingsCodec;
+import tp2.searchEngine.index.PostingsList;
+import tp2.searchEngine.index.TermDictionary;
+import tp2.searchEngine.index.TermFrequencies;
+import tp2.searchEngine.utils.Analyzer;
+
+/**
+ * Parallel index builder. Documents are added one at a time and grouped in
+ * partitions of consecutive documents, each analysed by a thread of a pool
+ * into a partial dictionary and inverted index. Partitions are merged in
+ * document order as soon as they are analysed, which gives the same term IDs
+ * and sorted postings as a sequential build. The number of partitions waiting
+ * to be merged is bounded, so add blocks when the analysis falls behind.
+ */
+public class Indexer {
+
+	/**
+	 * Number of documents per partition.
+	 */
+	static final int PARTITION_SIZE = 256;
+
+	/**
+	 * Number of partitions per thread that may wait to be merged.
+	 */
+	private static final int PENDING_PARTITIONS_PER_THREAD = 4;
+
+	private final Supplier<Analyzer> analyzers;
+	private final PostingsCodec codec;
+	private final int threads;
+	private final ExecutorService workers;
+
+	// partitions submitted to the workers and not merged yet, in document order
+	private final ArrayDeque<IndexPartition> pending = new ArrayDeque<IndexPartition>();
+	private IndexPartition current;
+	private int nbDocuments;
+
+	private final TermDictionary dictionary;
+	// postings of each term id, appended partition after partition
+	private final ArrayList<PostingsList> postingsBuilder = new ArrayList<PostingsList>();
+	private final ForwardIndex forwardIndex = new ForwardIndex();
+	private int[] docLengths = new int[PARTITION_SIZE];
+	private double[] docNorms = new double[PARTITION_SIZE];
+	private int nbMerged;
+	private int expectedSize;
+	private double lastDisplay;
+
+	private CompressedPostings[] postings;
+
+	/**
+	 * Creates an indexer and starts its worker threads.
+	 * @param analyzers Supplies a new analysis chain for each partition of documents.
+	 * @param codec The codec compressing the postings.
+	 * @param threads The number of analysis threads.
+	 */
+	public Indexer(Supplier<Analyzer> analyzers, PostingsCodec codec, int threads) {
+		this(analyzers, codec, threads, new TermDictionary());
+	}
+
+	/**
+	 * Creates an indexer adding the terms of its documents to an existing
+	 * dictionary, whose term IDs and frequencies are kept. Document IDs still
+	 * start at 0.
+	 * @param analyzers Supplies a new analysis chain for each partition of documents.
+	 * @param codec The codec compressing the postings.
+	 * @param threads The number of analysis threads.
+	 * @param dictionary The dictionary receiving the terms of the documents.
+	 */
+	public Indexer(Supplier<Analyzer> analyzers, PostingsCodec codec, int threads, TermDictionary dictionary) {
+		this.analyzers = analyzers;
+		this.dictionary = dictionary;
+		this.codec = codec;
+		this.threads = Math.max(1, threads);
+		this.workers = Executors.newFixedThreadPool(this.threads);
+	}
+
+	/**
+	 * Adds a document to the index. Its ID in the index is the number of
+	 * documents added before it.
+	 * @param document The document to index.
+	 */
+	public void add(DocumentInfo document) {
+		if (current == null) {
+			current = new IndexPartition(nbDocuments);
+		}
+		current.documents.add(document);
+		nbDocuments++;
+		if (current.documents.size() == PARTITION_SIZE) {
+			submit();
+		}
+	}
+
+	/**
+	 * Waits for the analysis of all documents, merges the last partitions and
+	 * compresses the postings. The indexer cannot be used to add documents anymore.
+	 */
+	public void finish() {
+		try {
+			if (current != null) {
+				submit();
+			}
+			while (!pending.isEmpty()) {
+				merge(pending.poll());
+			}
+		} finally {
+			// no task is submitted anymore, the threads end once idle, even
+			// when the analysis or a merge failed
+			workers.shutdown();
+		}
+
+		// Compressed postings, indexed by term id
+		docLengths = Arrays.copyOf(docLengths, nbMerged);
+		docNorms = Arrays.copyOf(docNorms, nbMerged);
+		forwardIndex.trimToSize();
+		postings = new CompressedPostings[dictionary.size()];
+		for (int termId = 0; termId < postingsBuilder.size(); termId++) {
+			if (postingsBuilder.get(termId) != null) {
+				postings[termId] = CompressedPostings.compress(termId, postingsBuilder.get(termId), codec, docLengths,
+						docNorms);
+				postingsBuilder.set(termId, null);
+			}
+		}
+	}
+
+	/**
+	 * Sets the expected number of documents, used to display the progress in percent.
+	 * @param expectedSize The expected number of documents, 0 if unknown.
+	 */
+	public void setExpectedSize(int expectedSize) {
+		this.expectedSize = expectedSize;
+	}
+
+	/**
+	 * Returns the number of documents added so far.
+	 * @return The number of documents added.
+	 */
+	public int getNbDocuments() {
+		return nbDocuments;
+	}
+
+	/**
+	 * Returns the dictionary of the indexed terms.
+	 * @return The term dictionary.
+	 */
+	public TermDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Returns the compressed postings by term ID, once finished, null for the
+	 * terms of the dictionary that are not in the added documents.
+	 * @return The inverted index.
+	 */
+	public CompressedPostings[] getPostings() {
+		return postings;
+	}
+
+	/**
+	 * Returns the term vectors of the documents by document ID.
+	 * @return The forward index.
+	 */
+	public ForwardIndex getForwardIndex() {
+		return forwardIndex;
+	}
+
+	/**
+	 * Returns the number of distinct terms of each document, once finished.
+	 * @return The document lengths.
+	 */
+	public int[] getDocLengths() {
+		return docLengths;
+	}
+
+	/**
+	 * Returns the norm of each document vector, once finished.
+	 * @return The document norms.
+	 */
+	public double[] getDocNorms() {
+		return docNorms;
+	}
+
+	// sends the current partition to the workers, merging the analysed ones
+	private void submit() {
+		final IndexPartition partition = current;
+		current = null;
+		partition.task = workers.submit(new Runnable() {
+			public void run() {
+				partition.build();
+			}
+		});
+		pending.add(partition);
+		try {
+			while (!pending.isEmpty() && (pending.peek().task.isDone()
+					|| pending.size() > threads * PENDING_PARTITIONS_PER_THREAD)) {
+				merge(pending.poll());
+			}
+		} catch (RuntimeException | Error e) {
+			// the indexer cannot be used anymore, do not leave its threads running
+			workers.shutdownNow();
+			throw e;
+		}
+	}
+
+	private void merge(IndexPartition partition) {
+		try {
+			partition.task.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("Indexing of documents " + partition.start + " to "
+					+ (partition.start + partition.documents.size() - 1) + " failed", e);
+		}
+
+		int size = partition.documents.size();
+		if (nbMerged + size > docLengths.length) {
+			int capacity = Math.max(nbMerged + size, docLengths.length * 2);
+			docLengths = Arrays.copyOf(docLengths, capacity);
+			docNorms = Arrays.copyOf(docNorms, capacity);
+		}
+		System.arraycopy(partition.docLengths, 0, docLengths, nbMerged, size);
+		System.arraycopy(partition.docNorms, 0, docNorms, nbMerged, size);
+
+		int[] termIds = new int[partition.dictionary.size()];
+		for (int partitionTermId = 0; partitionTermId < partition.dictionary.size(); partitionTermId++) {
+			int termId = dictionary.add(partition.dictionary.getTerm(partitionTermId));
+			termIds[partitionTermId] = termId;
+			dictionary.addOccurrences(termId, partition.dictionary.getDocFrequency(partitionTermId),
+					partition.dictionary.getCollectionFrequency(partitionTermId));
+
+			// Inverted Index, postings as (docId, tf) pairs
+			while (termId >= postingsBuilder.size()) {
+				postingsBuilder.add(null);
+			}
+			if (postingsBuilder.get(termId) == null) {
+				postingsBuilder.set(termId, partition.postings.get(partitionTermId));
+			} else {
+				postingsBuilder.get(termId).addAll(partition.postings.get(partitionTermId));
+			}
+		}
+
+		// Forward Index, term vectors translated to the global term ids
+		forwardIndex.addAll(partition.forwardIndex, termIds);
+		nbMerged += size;
+		displayProgress();
+	}
+
+	private void displayProgress() {
+		NumberFormat myFormat = new DecimalFormat("#0");
+		if (expectedSize > 0) {
+			double percentageDone = 100.0 * nbMerged / expectedSize;
+			if (percentageDone - lastDisplay >= 5.0) {
+				System.out.println("Index generating... " + myFormat.format(percentageDone) + "%");
+				lastDisplay = percentageDone;
+			}
+		} else if (nbMerged - lastDisplay >= 20 * PARTITION_SIZE) {
+			System.out.println("Index generating... " + nbMerged + " documents");
+			lastDisplay = nbMerged;
+		}
+	}
+
+	/*
+	 * Analysis of consecutive documents by one indexing thread: term vectors,
+	 * lengths and norms of its documents, and partial dictionary and inverted
+	 * index with terms in order of first occurrence in the partition
+	 */
+	private class IndexPartition {
+
+		final int start;
+		final ArrayList<DocumentInfo> documents = new ArrayList<DocumentInfo>(PARTITION_SIZE);
+		final TermDictionary dictionary = new TermDictionary();
+		final ArrayList<PostingsList> postings = new ArrayList<PostingsList>();
+		final ForwardIndex forwardIndex = new ForwardIndex();
+		int[] docLengths;
+		double[] docNorms;
+		Future<?> task;
+
+		IndexPartition(int start) {
+			this.start = start;
+		}
+
+		void build() {
+			// analyzers are stateful (stemmers), each partition has its own
+			Analyzer analyzer = analyzers.get();
+			TermFrequencies frequencies = new TermFrequencies();
+
+			docLengths = new int[documents.size()];
+			docNorms = new double[documents.size()];
+
+			for (int i = 0; i < documents.size(); i++) {
+				analyzer.analyze(documents.get(i).getContent(), dictionary, frequencies);
+
+				for (int j = 0; j < frequencies.size(); j++) {
+					int termId = frequencies.getTermId(j);
+					int tf = frequencies.getTf(j);
+					while (termId >= postings.size()) {
+						postings.add(new PostingsList());
+					}
+					dictionary.addOccurrences(termId, 1, tf);
+					postings.get(termId).add(start + i, tf);
+				}
+				forwardIndex.add(frequencies);
+				docLengths[i] = frequencies.size();
+				docNorms[i] = Similarity.computeNorm(frequencies);
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package tp2.searchEngine;
+
+import tp2.searchEngine.index.PostingsCursor;
+
+/**
+ * Document-at-a-time query evaluator implementing MaxScore dynamic pruning.
+ * Terms are sorted by increasing upper bound; the longest prefix of terms
+ * whose bounds add up to no more than the k-th best score so far is
+ * non-essential: a document containing only these terms cannot enter the
+ * top-k. Candidates are enumerated from the essential postings only, and the
+ * non-essential postings are probed with nextGEQ, highest bound first, as long
+ * as the candidate can still beat the threshold.
+ * Contributions are summed in query order, so scores are identical to the
+ * ones of the term-at-a-time evaluation.
+ */
+public class MaxScoreEvaluator {
+
+	private final Similarity similarity;
+
+	private int documentsScored;
+
+	/**
+	 * Creates a MaxScore evaluator.
+	 * @param similarity The similarity computing the scores and upper bounds.
+	 */
+	public MaxScoreEvaluator(Similarity similarity) {
+		this.similarity = similarity;
+	}
+
+	/**
+	 * Returns the number of candidate documents whose scoring was started during
+	 * the last evaluation, including the ones abandoned while probing the
+	 * non-essential terms.
+	 * @return The number of documents scored.
+	 */
+	public int getDocumentsScored() {
+		return documentsScored;
+	}
+
+	/**
+	 * Evaluates a query.
+	 * @param query The query terms.
+	 * @param k The number of results wanted.
+	 * @return The heap of the k best documents.
+	 */
+	public TopKHeap evaluate(QueryTerms query, int k) {
+
+		int n = query.size();
+		TopKHeap topK = new TopKHeap(k);
+		PostingsCursor[] cursors = new PostingsCursor[n];
+		// term indexes by increasing upper bound, and cumulated bounds of this order
+		int[] order = sortByUpperBound(query.upperBounds);
+		double[] cumulatedBounds = new double[n];
+		// unnormalized contributions of the terms to the current candidate
+		double[] contributions = new double[n];
+		boolean[] matched = new boolean[n];
+
+		documentsScored = 0;
+		for (int i = 0; i < n; i++) {
+			cursors[order[i]] = query.postings[order[i]].cursor();
+			cursors[order[i]].nextDoc();
+			cumulatedBounds[i] = (i > 0 ? cumulatedBounds[i - 1] : 0) + query.upperBounds[order[i]];
+		}
+
+		int firstEssential = 0;
+		while (firstEssential < n) {
+
+			// next candidate: smallest document of the essential terms
+			int doc = PostingsCursor.NO_MORE_DOCS;
+			for (int i = firstEssential; i < n; i++) {
+				doc = Math.min(doc, cursors[order[i]].docId());
+			}
+			if (doc == PostingsCursor.NO_MORE_DOCS) {
+				break;
+			}
+
+			documentsScored++;
+			double threshold = topK.threshold();
+			double partial = 0;
+			for (int i = firstEssential; i < n; i++) {
+				int t = order[i];
+				if (cursors[t].docId() == doc) {
+					contributions[t] = similarity.contribution(query, t, cursors[t].tf());
+					matched[t] = true;
+					partial += contributions[t];
+					cursors[t].nextDoc();
+				}
+			}
+
+			// probe the non-essential terms while the candidate can still qualify
+			boolean qualifies = true;
+			for (int i = firstEssential - 1; i >= 0 && qualifies; i--) {
+				if (!WandEvaluator.canEnter(similarity.normalize(query, partial, doc) + cumulatedBounds[i], threshold)) {
+					qualifies = false;
+				} else {
+					int t = order[i];
+					if (cursors[t].nextGEQ(doc) == doc) {
+						contributions[t] = similarity.contribution(query, t, cursors[t].tf());
+						matched[t] = true;
+						partial += contributions[t];
+					}
+				}
+			}
+
+			if (qualifies) {
+				double score = 0;
+				for (int t = 0; t < n; t++) {
+					if (matched[t]) {
+						score += contributions[t];
+					}
+				}
+				if (topK.insert(similarity.normalize(query, score, doc), doc)) {
+					// the threshold may have risen: more terms become non-essential
+					while (firstEssential < n && !WandEvaluator.canEnter(cumulatedBounds[firstEssential], topK.threshold())) {
+						firstEssential++;
+					}
+				}
+			}
+			for (int t = 0; t < n; t++) {
+				matched[t] = false;
+			}
+		}
+		return topK;
+	}
+
+	// term indexes by increasing upper bound, ties by query order
+	private static int[] sortByUpperBound(double[] upperBounds) {
+		int[] order = new int[upperBounds.length];
+		for (int i = 0; i < order.length; i++) {
+			int j = i - 1;
+			while (j >= 0 && upperBounds[order[j]] > upperBounds[i]) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = i;
+		}
+		return order;
+	}
+}
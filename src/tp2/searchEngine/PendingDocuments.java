@@ -0,0 +1,71 @@
+package tp2.searchEngine;
+
+import java.util.ArrayList;
+import java.util.Vector;
+
+import tp2.searchEngine.index.DocumentStore;
+import tp2.searchEngine.index.ForwardIndex;
+import tp2.searchEngine.index.Postings;
+import tp2.searchEngine.index.PostingsSegment;
+import tp2.searchEngine.index.TermDictionary;
+
+/**
+ * Documents analysed and indexed by SearchEngineImpl while the queries still
+ * run on the previous index, with the tables of the index including them.
+ * The queries switch to these tables at once when the documents are applied.
+ */
+class PendingDocuments {
+
+	/**
+	 * Documents to append to the database.
+	 */
+	final Vector<DocumentInfo> added;
+
+	/**
+	 * Store of the contents, null when they are only stored by saveIndex.
+	 */
+	final DocumentStore store;
+
+	/**
+	 * Copy of the dictionary with the terms and frequencies of the documents.
+	 */
+	final TermDictionary dictionary;
+
+	/**
+	 * Term vectors of the documents, to append to the forward index.
+	 */
+	final ForwardIndex forwardIndex;
+
+	/**
+	 * Number of distinct terms of every document of the index.
+	 */
+	final int[] docLengths;
+
+	/**
+	 * Norm of every document vector of the index.
+	 */
+	final double[] docNorms;
+
+	/**
+	 * Segments of the index, the new one included and merged.
+	 */
+	final ArrayList<PostingsSegment> segments;
+
+	/**
+	 * Postings of each term over the segments.
+	 */
+	final Postings[] invertedIndex;
+
+	PendingDocuments(Vector<DocumentInfo> added, DocumentStore store, TermDictionary dictionary,
+			ForwardIndex forwardIndex, int[] docLengths, double[] docNorms, ArrayList<PostingsSegment> segments,
+			Postings[] invertedIndex) {
+		this.added = added;
+		this.store = store;
+		this.dictionary = dictionary;
+		this.forwardIndex = forwardIndex;
+		this.docLengths = docLengths;
+		this.docNorms = docNorms;
+		this.segments = segments;
+		this.invertedIndex = invertedIndex;
+	}
+}
@@ -0,0 +1,50 @@
+package tp2.searchEngine;
+
+import tp2.searchEngine.index.TermDictionary;
+import tp2.searchEngine.index.TermFrequencies;
+
+/**
+ * State of the evaluation of one query: the analysed query, its scoring data
+ * and the settings of the engine when the query started. A context is created
+ * by each query and only used by the thread running it, so that concurrent
+ * queries do not share any mutable state.
+ */
+class QueryContext {
+
+	/**
+	 * Terms of the query, in order of first occurrence.
+	 */
+	final TermDictionary dictionary;
+
+	/**
+	 * Frequencies of the terms of the query, by term ID of the query dictionary.
+	 */
+	final TermFrequencies frequencies;
+
+	/**
+	 * Similarity model of the query.
+	 */
+	final int similarityType;
+
+	/**
+	 * Evaluation strategy of the query.
+	 */
+	final int evaluationStrategy;
+
+	/**
+	 * Scoring data of the query terms found in the index, null until prepared.
+	 */
+	QueryTerms terms;
+
+	/**
+	 * Number of documents fully scored by the query.
+	 */
+	int documentsScored;
+
+	QueryContext(int similarityType, int evaluationStrategy) {
+		this.dictionary = new TermDictionary(16);
+		this.frequencies = new TermFrequencies();
+		this.similarityType = similarityType;
+		this.evaluationStrategy = evaluationStrategy;
+	}
+}
@@ -0,0 +1,83 @@
+package tp2.searchEngine;
+
+import java.util.Arrays;
+
+import tp2.searchEngine.index.Postings;
+
+/**
+ * Scoring data of a query for a given similarity model: the postings of the
+ * query terms found in the index, in query order, with their weights and
+ * the upper bound of the score each of them can add to a document.
+ * Built by {@link Similarity#prepareQuery}.
+ */
+public class QueryTerms {
+
+	/**
+	 * Postings of the query terms found in the index.
+	 */
+	final Postings[] postings;
+
+	/**
+	 * Term IDs of the query terms found in the index, in increasing order.
+	 */
+	final int[] sortedTermIds;
+
+	/**
+	 * Index in postings of each term of sortedTermIds.
+	 */
+	final int[] sortedTerms;
+
+	/**
+	 * Weight of each term, multiplied by the term frequency in vector models.
+	 */
+	final double[] weights;
+
+	/**
+	 * Highest contribution of each term to the score of a document.
+	 */
+	final double[] upperBounds;
+
+	/**
+	 * Number of distinct terms of the query, including the ones not in the index.
+	 */
+	final int queryLength;
+
+	/**
+	 * Norm of the query vector.
+	 */
+	final double queryNorm;
+
+	/**
+	 * Similarity model the weights and bounds were computed for.
+	 */
+	final Integer similarityType;
+
+	QueryTerms(Postings[] postings, double[] weights, double[] upperBounds, int queryLength,
+			double queryNorm, Integer similarityType) {
+		this.postings = postings;
+		this.sortedTermIds = new int[postings.length];
+		this.sortedTerms = new int[postings.length];
+		long[] entries = new long[postings.length];
+		for (int t = 0; t < postings.length; t++) {
+			entries[t] = ((long) postings[t].getTermId() << 32) | t;
+		}
+		Arrays.sort(entries);
+		for (int i = 0; i < entries.length; i++) {
+			sortedTermIds[i] = (int) (entries[i] >>> 32);
+			sortedTerms[i] = (int) entries[i];
+		}
+		this.weights = weights;
+		this.upperBounds = upperBounds;
+		this.queryLength = queryLength;
+		this.queryNorm = queryNorm;
+		this.similarityType = similarityType;
+	}
+
+	/**
+	 * Returns the number of query terms found in the index.
+	 * @return The number of scored terms.
+	 */
+	public int size() {
+		return postings.length;
+	}
+}
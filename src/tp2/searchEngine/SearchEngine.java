@@ -1,5 +1,7 @@
 package tp2.searchEngine;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Vector;
 
 import tp2.searchEngine.utils.CollectionReader;
@@ -18,12 +20,21 @@ public abstract class SearchEngine {
 	
 	/**
 	 * Returns the content of the database indexed by the search engine.
+	 * Deleted documents may stay in it until the index is saved, see getLiveDocuments.
 	 * @return A vector of DocumentInfo-derived objects representing the documents indexed by the search Engine.
 	 */
 	public Vector<DocumentInfo> getDatabase() {
 		return this.database;
 	}
 	
+	/**
+	 * Returns the documents of the database that are not deleted.
+	 * @return A vector of the live documents, in database order, null if there is no database.
+	 */
+	public Vector<DocumentInfo> getLiveDocuments() {
+		return this.getDatabase();
+	}
+	
 	/**
 	 * Sets the current database.
 	 * @param database The database to set set as current.
@@ -46,6 +57,42 @@ public abstract class SearchEngine {
 	 */
 	public abstract void indexDatabase();
 	
+	/**
+	 * Adds documents to the database and indexes them, without indexing the
+	 * documents of the database again.
+	 * @param documents The documents to add.
+	 */
+	public abstract void addDocuments( Vector<DocumentInfo> documents );
+
+	/**
+	 * Deletes a document, so that it is no longer returned by the queries.
+	 * @param id The ID of the document, as given by DocumentInfo.getId.
+	 * @return True if a document was deleted, false if no live document has this ID.
+	 */
+	public abstract boolean deleteDocument( int id );
+
+	/**
+	 * Replaces the document having the same ID by a new version, or adds it
+	 * if there is no such document.
+	 * @param document The new version of the document.
+	 */
+	public abstract void updateDocument( DocumentInfo document );
+
+	/**
+	 * Writes the index of the current database to a file, so that it can be
+	 * reopened with openIndex instead of indexing the database again.
+	 * @param indexPath The path of the index file.
+	 * @throws IOException If the index file cannot be written.
+	 */
+	public abstract void saveIndex( Path indexPath ) throws IOException;
+	
+	/**
+	 * Replaces the current database and index by an index written by saveIndex.
+	 * @param indexPath The path of the index file.
+	 * @throws IOException If the index file cannot be read.
+	 */
+	public abstract void openIndex( Path indexPath ) throws IOException;
+	
 	/**
 	 * Searches the database for documents that are similar to the query provided.
 	 * The search results are sorted in decreasing order of similarity to the query.
@@ -54,4 +101,21 @@ public abstract class SearchEngine {
 	 */
 	public abstract Vector<DocumentInfo> queryDatabase( String query );
 	
+	/**
+	 * Searches the database for the k documents that are the most similar to the query provided.
+	 * The search results are sorted in decreasing order of similarity to the query.
+	 * The default implementation truncates the full ranking; implementations should
+	 * override it to avoid building the full ranking.
+	 * @param query The query data as a string.
+	 * @param k The maximum number of documents to return.
+	 * @return A vector of at most k documents (described as DocumentInfo objects) in decreasing order of similarity.
+	 */
+	public Vector<DocumentInfo> queryDatabase( String query, int k ) {
+		Vector<DocumentInfo> results = this.queryDatabase( query );
+		if ( results.size() > k ) {
+			results.setSize( Math.max( k, 0 ) );
+		}
+		return results;
+	}
+	
 }
@@ -1,18 +1,30 @@
 package tp2.searchEngine;
 
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Locale;
-import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.List;
 import java.util.Vector;
-
-import tp.Vocabulary;
-import tp.WordBag;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import tp2.searchEngine.index.CompressedPostings;
+import tp2.searchEngine.index.DocumentStore;
+import tp2.searchEngine.index.ForwardIndex;
+import tp2.searchEngine.index.IndexSegment;
+import tp2.searchEngine.index.Postings;
+import tp2.searchEngine.index.PostingsCodec;
+import tp2.searchEngine.index.PostingsList;
+import tp2.searchEngine.index.PostingsSegment;
+import tp2.searchEngine.index.SegmentedPostings;
+import tp2.searchEngine.index.TermDictionary;
+import tp2.searchEngine.utils.Analyzer;
+import tp2.searchEngine.utils.CollectionReader;
+import tp2.searchEngine.utils.StemCache;
 import tp2.searchEngine.utils.Stemmer;
 import tp2.searchEngine.utils.StopList;
 import tp2.searchEngine.utils.Tokenizer;
@@ -31,100 +43,682 @@ public class SearchEngineImpl extends SearchEngine {
 
 	private static final String ENSTOP = "data/stopListEnglish.txt";
 
+	public final static int TERM_AT_A_TIME = 0;
+	public final static int WAND = 1;
+	public final static int BLOCK_MAX_WAND = 2;
+	public final static int MAXSCORE = 3;
+
+	// Number of surface forms whose stem is cached
+	private static final int STEM_CACHE_SIZE = 1 << 16;
+
+	// Number of parsed documents that may wait for indexing when loading a file
+	private static final int STREAM_WINDOW = 4 * Indexer.PARTITION_SIZE;
+
+	// Number of segments of a tier merged into a segment of the next tier
+	private static final int MERGE_FACTOR = 10;
+
 	String regex;
-	int similarityType;
-	String[] myTokens, myQuery;
+	volatile int similarityType;
+	volatile int evaluationStrategy;
+	int indexingThreads;
 	Tokenizer myTokenizer;
 	StopList enStopList;
-	Stemmer myStemmer;
-	Vocabulary myVocabulary;
-
-	HashMap<Integer, WordBag> index;
-	HashMap<String, ArrayList<Integer>> invertedIndex;
+	StemCache enStemCache;
+	ThreadLocal<Analyzer> queryAnalyzers;
+	TermDictionary dictionary;
+
+	ForwardIndex forwardIndex;
+	DocumentStore documentStore;
+	ArrayList<PostingsSegment> segments;
+	Postings[] invertedIndex;
+	PostingsCodec postingsCodec;
+	int[] docLengths;
+	double[] docNorms;
+	int nbDeleted;
+	HashMap<Integer, Integer> docPositions;
 
-	HashSet<Integer> applicants;
-
-	WordBag queryWordBag;
 	Similarity mySimilarity;
+
+	/*
+	 * Queries share the read lock of indexLock. The methods changing the index
+	 * take updateLock, so that they run one at a time, prepare the new tables
+	 * while the queries go on, and only take the write lock to switch the
+	 * tables the queries read. updateLock is always taken first.
+	 */
+	final ReentrantLock updateLock = new ReentrantLock();
+	final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+	final ThreadLocal<QueryContext> lastQuery = new ThreadLocal<QueryContext>();
 	
 	public SearchEngineImpl() {
 		similarityType = Similarity.DICE;
+		evaluationStrategy = TERM_AT_A_TIME;
+		postingsCodec = PostingsCodec.PFOR_DELTA;
+		indexingThreads = Runtime.getRuntime().availableProcessors();
 		database = new Vector<DocumentInfo>();
 
 		regex = " ,.;:()'\"<>";
-		myTokens = null;
-		myQuery = null;
 		myTokenizer = new Tokenizer(regex);
 		enStopList = new StopList(ENSTOP);
-		myStemmer = new Stemmer(Stemmer.StemmerLanguage.ENGLISH);
-		myVocabulary = new Vocabulary();
+		enStemCache = new StemCache(Stemmer.StemmerLanguage.ENGLISH, STEM_CACHE_SIZE);
+		queryAnalyzers = ThreadLocal.withInitial(this::newAnalyzer);
+		dictionary = new TermDictionary();
+
+		forwardIndex = new ForwardIndex();
+		documentStore = null;
+		segments = new ArrayList<PostingsSegment>();
+		invertedIndex = new Postings[0];
+		docLengths = new int[0];
+		docNorms = new double[0];
+		nbDeleted = 0;
+		docPositions = null;
+	}
 
-		index = new HashMap<Integer, WordBag>();
-		invertedIndex = new HashMap<String, ArrayList<Integer>>();
+	public void resetDB() {
+		updateLock.lock();
+		indexLock.writeLock().lock();
+		try {
+			database = new Vector<DocumentInfo>();
+
+			regex = " ,.;:()'\"<>";
+			myTokenizer = new Tokenizer(regex);
+			enStopList = new StopList(ENSTOP);
+			enStemCache = new StemCache(Stemmer.StemmerLanguage.ENGLISH, STEM_CACHE_SIZE);
+			queryAnalyzers = ThreadLocal.withInitial(this::newAnalyzer);
+			dictionary = new TermDictionary();
+
+			forwardIndex = new ForwardIndex();
+			documentStore = null;
+			segments = new ArrayList<PostingsSegment>();
+			invertedIndex = new Postings[0];
+			docLengths = new int[0];
+			docNorms = new double[0];
+			nbDeleted = 0;
+			docPositions = null;
+		} finally {
+			indexLock.writeLock().unlock();
+			updateLock.unlock();
+		}
+	}
+	
+	@Override
+	public void indexDatabase() {
 
-		queryWordBag = null;
+		updateLock.lock();
+		try {
+			System.out.println("Index generating... 0%");
+			Indexer indexer = newIndexer();
+			indexer.setExpectedSize(database.size());
+			for (DocumentInfo document : database) {
+				indexer.add(document);
+			}
+			// contents of the given database are stored by saveIndex only
+			finishIndexing(indexer, database, null);
+		} finally {
+			updateLock.unlock();
+		}
 	}
 
-	public void resetDB() {
-		database = new Vector<DocumentInfo>();
+	/*
+	 * Parses the TREC file in a background thread and indexes the documents
+	 * while they are parsed, only a bounded window of parsed documents waiting
+	 * for analysis. The contents are compressed in the document store and the
+	 * database only keeps lazy DocumentInfos reading them. The queries run on
+	 * the previous database until the new one is indexed.
+	 */
+	@Override
+	public void loadDatabaseFile(String databaseFilePath) {
+
+		updateLock.lock();
+		try {
+			System.out.println("Index generating...");
+			BlockingQueue<DocumentInfo> documents = CollectionReader.streamDatabaseFile(databaseFilePath, STREAM_WINDOW);
+			Indexer indexer = newIndexer();
+			Vector<DocumentInfo> newDatabase = new Vector<DocumentInfo>();
+			DocumentStore store = new DocumentStore();
+
+			try {
+				for (DocumentInfo document = documents.take(); document != CollectionReader.END_OF_STREAM; document = documents.take()) {
+					int storeId = store.add(document.getContent());
+					newDatabase.add(new StoredDocumentInfo(document.getId(), store, storeId));
+					indexer.add(document);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Loading of " + databaseFilePath + " interrupted", e);
+			}
+			finishIndexing(indexer, newDatabase, store);
+		} finally {
+			updateLock.unlock();
+		}
+	}
 
-		regex = " ,.;:()'\"<>";
-		myTokens = null;
-		myQuery = null;
-		myTokenizer = new Tokenizer(regex);
-		enStopList = new StopList(ENSTOP);
-		myStemmer = new Stemmer(Stemmer.StemmerLanguage.ENGLISH);
-		myVocabulary = new Vocabulary();
+	private Indexer newIndexer() {
+		return new Indexer(this::newAnalyzer, postingsCodec, indexingThreads);
+	}
 
-		index = new HashMap<Integer, WordBag>();
-		invertedIndex = new HashMap<String, ArrayList<Integer>>();
+	/*
+	 * Analysis chain shared by documents and queries: lowercased tokens,
+	 * English stop-list, then English stemmer, all stemmers sharing the same
+	 * cache of stems. An analyzer is used by a single thread: each indexing
+	 * thread and each querying thread has its own.
+	 */
+	private Analyzer newAnalyzer() {
+		return new Analyzer(myTokenizer, enStopList, new Stemmer(Stemmer.StemmerLanguage.ENGLISH, enStemCache));
+	}
+
+	private void finishIndexing(Indexer indexer, Vector<DocumentInfo> newDatabase, DocumentStore store) {
+
+		indexer.finish();
+		ArrayList<PostingsSegment> newSegments = new ArrayList<PostingsSegment>();
+		newSegments.add(new PostingsSegment(0, indexer.getNbDocuments(), indexer.getPostings()));
+
+		System.out.println("Index generated");
+		replaceIndex(newDatabase, store, indexer.getDictionary(), indexer.getForwardIndex(), indexer.getDocLengths(),
+				indexer.getDocNorms(), newSegments);
 
-		queryWordBag = null;
 	}
-	
+
+	/*
+	 * Switches the queries to a new index without deleted documents, its
+	 * postings over the segments being collected beforehand
+	 */
+	private void replaceIndex(Vector<DocumentInfo> newDatabase, DocumentStore store, TermDictionary newDictionary,
+			ForwardIndex newForwardIndex, int[] lengths, double[] norms, ArrayList<PostingsSegment> newSegments) {
+
+		Postings[] postings = buildPostings(newSegments, newDictionary.size());
+		indexLock.writeLock().lock();
+		try {
+			database = newDatabase;
+			documentStore = store;
+			dictionary = newDictionary;
+			forwardIndex = newForwardIndex;
+			docLengths = lengths;
+			docNorms = norms;
+			segments = newSegments;
+			invertedIndex = postings;
+			nbDeleted = 0;
+			docPositions = null;
+			updateIdf();
+		} finally {
+			indexLock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Indexes the new documents in a new segment with the terms of the
+	 * dictionary, the documents already indexed are not analysed again. The
+	 * documents can be searched as soon as the method returns. The segments
+	 * are then merged following the tiered merge policy. The analysis, the
+	 * merges and the postings are done on a copy of the dictionary and new
+	 * tables while the queries go on, the queries only waiting for the new
+	 * documents to be appended to the database and the forward index.
+	 */
 	@Override
-	public void indexDatabase() {
+	public void addDocuments(Vector<DocumentInfo> documents) {
+
+		updateLock.lock();
+		try {
+			PendingDocuments pending = prepareDocuments(documents, -1);
+			indexLock.writeLock().lock();
+			try {
+				applyDocuments(pending);
+			} finally {
+				indexLock.writeLock().unlock();
+			}
+		} finally {
+			updateLock.unlock();
+		}
+	}
 
-		System.out.println("Index generating... 0%");
-		double corpusPosition = 1;
-		double corpusSize = (double) database.size();
-		double percentageDone;
-		double lastDisplay = 0.0;
-		NumberFormat myFormat = new DecimalFormat("#0");
+	/*
+	 * Analyses the documents into a new segment and prepares the tables of
+	 * the index including them, without changing the ones the queries read.
+	 * The document at position deletedDoc of the database, if not -1, is
+	 * deleted when the documents are applied: the postings of its segment
+	 * are then views of the live documents, which skip it once deleted.
+	 */
+	private PendingDocuments prepareDocuments(Vector<DocumentInfo> documents, int deletedDoc) {
+
+		int docBase = database.size();
+		TermDictionary newDictionary = new TermDictionary(dictionary);
+		Indexer indexer = new Indexer(this::newAnalyzer, postingsCodec, indexingThreads, newDictionary);
+		// a store read from an index file is read-only, saveIndex builds a new one
+		DocumentStore store = documentStore != null && documentStore.isReadOnly() ? null : documentStore;
+		Vector<DocumentInfo> added = new Vector<DocumentInfo>(documents.size());
+		for (DocumentInfo document : documents) {
+			if (store != null) {
+				int storeId = store.add(document.getContent());
+				added.add(new StoredDocumentInfo(document.getId(), store, storeId));
+			} else {
+				added.add(document);
+			}
+			indexer.add(document);
+		}
+		indexer.finish();
+
+		int[] lengths = Arrays.copyOf(docLengths, docBase + indexer.getNbDocuments());
+		System.arraycopy(indexer.getDocLengths(), 0, lengths, docBase, indexer.getNbDocuments());
+		double[] norms = Arrays.copyOf(docNorms, docBase + indexer.getNbDocuments());
+		System.arraycopy(indexer.getDocNorms(), 0, norms, docBase, indexer.getNbDocuments());
+		PostingsSegment segment = new PostingsSegment(docBase, indexer.getNbDocuments(), indexer.getPostings());
+		ArrayList<PostingsSegment> newSegments = new ArrayList<PostingsSegment>(segments);
+		newSegments.add(segment);
+
+		ArrayList<PostingsSegment> changed = new ArrayList<PostingsSegment>();
+		changed.add(segment);
+		mergeSegments(newSegments, newDictionary.size(), lengths, norms, changed);
+		PostingsSegment viewed = null;
+		if (deletedDoc >= 0) {
+			// the segment holding the deleted document after the merges
+			PostingsSegment deletedSegment = newSegments.get(segmentOf(newSegments, deletedDoc));
+			if (!deletedSegment.hasPendingDeletes()) {
+				viewed = deletedSegment;
+				changed.add(deletedSegment);
+			}
+		}
+		Postings[] postings = updatePostings(newSegments, newDictionary.size(), changed, viewed);
 
-		for (DocumentInfo document : database) {
+		return new PendingDocuments(added, store, newDictionary, indexer.getForwardIndex(), lengths, norms,
+				newSegments, postings);
+	}
 
-			myTokens = myTokenizer.tokenize(document.getContent().toLowerCase(Locale.forLanguageTag("en")));
-			myTokens = enStopList.filter(myTokens);
-			myTokens = myStemmer.stem(myTokens);
+	/*
+	 * Appends the prepared documents to the database and switches the
+	 * queries to the tables including them, under the write lock
+	 */
+	private void applyDocuments(PendingDocuments pending) {
 
-			myVocabulary.getVocabulary(myTokens);
+		for (DocumentInfo document : pending.added) {
+			database.add(document);
+			if (docPositions != null) {
+				docPositions.put(document.getId(), database.size() - 1);
+			}
+		}
+		documentStore = pending.store;
+		dictionary = pending.dictionary;
+		forwardIndex.addAll(pending.forwardIndex);
+		docLengths = pending.docLengths;
+		docNorms = pending.docNorms;
+		segments = pending.segments;
+		invertedIndex = pending.invertedIndex;
+		updateIdf();
+	}
+
+	/*
+	 * Deletes the live document of the database with the given id, the last
+	 * added one if several documents have this id. The document stays in the
+	 * database until the index is saved, see getLiveDocuments, but its
+	 * postings are skipped by the query evaluation, then dropped when its
+	 * segment is merged. The document frequencies of its terms are decreased
+	 * at once, so that the scores of the live documents are the ones of an
+	 * index built without it. The queries only wait for the frequencies of
+	 * the terms of the document to be decreased, the postings of its segment
+	 * being prepared beforehand at its first deletion.
+	 */
+	@Override
+	public boolean deleteDocument(int id) {
 
-			index.put(document.id-1, new WordBag(myTokens));
+		updateLock.lock();
+		try {
+			Integer doc = getDocPositions().get(id);
+			if (doc == null) {
+				return false;
+			}
+			PostingsSegment segment = segments.get(segmentOf(segments, doc));
+			// the postings of the segment only need to check its live documents
+			// from its first pending deletion: the views are created before it
+			// and see it, then the next ones
+			Postings[] postings = segment.hasPendingDeletes() ? invertedIndex
+					: updatePostings(segments, dictionary.size(), Collections.singletonList(segment), segment);
+			indexLock.writeLock().lock();
+			try {
+				markDeleted(id, doc, segments, dictionary);
+				invertedIndex = postings;
+				updateIdf();
+			} finally {
+				indexLock.writeLock().unlock();
+			}
+			return true;
+		} finally {
+			updateLock.unlock();
+		}
+	}
 
-			// Inverted Index
-			for (Entry<String, Integer> e : index.get(document.id-1).entrySet()) {
-				if (!invertedIndex.containsKey(e.getKey())) {
-					invertedIndex.put(e.getKey(), new ArrayList<Integer>());
-				} else {
-					invertedIndex.get(e.getKey()).add(document.id-1);
+	/*
+	 * The new version is analysed and indexed while the queries go on, then
+	 * the queries see the deletion of the previous version and the addition
+	 * of the new one at once
+	 */
+	@Override
+	public void updateDocument(DocumentInfo document) {
+
+		updateLock.lock();
+		try {
+			Integer doc = getDocPositions().get(document.getId());
+			Vector<DocumentInfo> documents = new Vector<DocumentInfo>(1);
+			documents.add(document);
+			PendingDocuments pending = prepareDocuments(documents, doc == null ? -1 : doc);
+			indexLock.writeLock().lock();
+			try {
+				if (doc != null) {
+					markDeleted(document.getId(), doc, pending.segments, pending.dictionary);
 				}
+				applyDocuments(pending);
+			} finally {
+				indexLock.writeLock().unlock();
 			}
-			percentageDone = (corpusPosition / corpusSize) * 100;
-			corpusPosition += 1.0;
-			if (percentageDone - lastDisplay >= 5.0) {
-				System.out.println("Index generating... " + myFormat.format(percentageDone) + "%");
-				lastDisplay = percentageDone;
+		} finally {
+			updateLock.unlock();
+		}
+	}
+
+	/*
+	 * Deletes the document at the given position of the database from its
+	 * segment in the list and decreases the frequencies of its terms in the
+	 * dictionary, under the write lock. The postings of the segment must be
+	 * views of its live documents.
+	 */
+	private void markDeleted(int id, int doc, List<PostingsSegment> segmentList, TermDictionary termDictionary) {
+
+		docPositions.remove(id);
+		PostingsSegment segment = segmentList.get(segmentOf(segmentList, doc));
+		segment.delete(doc - segment.getDocBase());
+		nbDeleted++;
+		for (int position = forwardIndex.getStart(doc); position < forwardIndex.getEnd(doc); position++) {
+			termDictionary.addOccurrences(forwardIndex.getTermIdAt(position), -1, -forwardIndex.getTfAt(position));
+		}
+	}
+
+	/*
+	 * Position in the database of the live document of each id, built at the
+	 * first deletion after the database is indexed
+	 */
+	private HashMap<Integer, Integer> getDocPositions() {
+
+		if (docPositions == null) {
+			docPositions = new HashMap<Integer, Integer>(database.size() * 2);
+			for (int doc = 0; doc < database.size(); doc++) {
+				if (!isDeleted(doc)) {
+					docPositions.put(database.get(doc).getId(), doc);
+				}
 			}
 		}
+		return docPositions;
+	}
 
-		System.out.println("Index generated");
-		mySimilarity = new Similarity(database,invertedIndex);
+	/*
+	 * Index of the segment of the list holding a document
+	 */
+	private static int segmentOf(List<PostingsSegment> segmentList, int doc) {
+
+		int low = 0;
+		int high = segmentList.size() - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (segmentList.get(middle).getDocBase() <= doc) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
 
+	private boolean isDeleted(int doc) {
+		PostingsSegment segment = segments.get(segmentOf(segments, doc));
+		return !segment.isLive(doc - segment.getDocBase());
+	}
+
+	/*
+	 * Tiered merge policy: the tier of a segment is the power of MERGE_FACTOR
+	 * of its number of documents. The segments are cut in bands, each band
+	 * running from the end of the previous one to the last segment of the
+	 * highest tier left, so that the small segments between two segments of
+	 * a tier, like the ones of single updated documents, belong to the band
+	 * of this tier. As soon as a band holds MERGE_FACTOR segments, its first
+	 * MERGE_FACTOR segments are merged into one, usually of a higher tier,
+	 * which may in turn complete a band. The tiers of the bands decrease along
+	 * the index and a band is left with fewer than MERGE_FACTOR segments, so
+	 * the number of segments stays below MERGE_FACTOR per tier, logarithmic in
+	 * the number of documents. The segments of the list are replaced by their
+	 * merges, with the given number of terms and document tables, and the
+	 * segments replaced and created are added to changed.
+	 */
+	private void mergeSegments(ArrayList<PostingsSegment> segmentList, int nbTerms, int[] lengths, double[] norms,
+			List<PostingsSegment> changed) {
+
+		int start = 0;
+		while (start < segmentList.size()) {
+			int maxTier = 0;
+			for (int i = start; i < segmentList.size(); i++) {
+				maxTier = Math.max(maxTier, tier(segmentList.get(i)));
+			}
+			int end = start;
+			for (int i = start; i < segmentList.size(); i++) {
+				if (tier(segmentList.get(i)) == maxTier) {
+					end = i + 1;
+				}
+			}
+			if (end - start >= MERGE_FACTOR) {
+				List<PostingsSegment> merged = segmentList.subList(start, start + MERGE_FACTOR);
+				PostingsSegment segment = PostingsSegment.merge(merged, nbTerms, postingsCodec, lengths, norms, false);
+				changed.addAll(merged);
+				changed.add(segment);
+				merged.clear();
+				segmentList.add(start, segment);
+				// the merged segment may complete the band of a higher tier
+				start = 0;
+			} else {
+				start = end;
+			}
+		}
+	}
+
+	private static int tier(PostingsSegment segment) {
+		int tier = 0;
+		for (long size = MERGE_FACTOR; size <= segment.size(); size *= MERGE_FACTOR) {
+			tier++;
+		}
+		return tier;
+	}
+
+	/*
+	 * Postings of each term over all the segments of the list, skipping the
+	 * deleted documents
+	 */
+	private Postings[] buildPostings(List<PostingsSegment> segmentList, int nbTerms) {
+
+		Postings[] postings = new Postings[nbTerms];
+		for (int termId = 0; termId < nbTerms; termId++) {
+			postings[termId] = collectPostings(segmentList, termId, null);
+		}
+		return postings;
+	}
+
+	/*
+	 * Same as buildPostings when only the given segments were added, removed
+	 * by a merge or got their first pending deletion: the inverted index is
+	 * copied, only the postings of the terms found in these segments being
+	 * collected again, so that the queries running on the current one are
+	 * not disturbed. The postings of the viewed segment, if not null, are
+	 * views of its live documents even before its first deletion.
+	 */
+	private Postings[] updatePostings(List<PostingsSegment> segmentList, int nbTerms, List<PostingsSegment> changed,
+			PostingsSegment viewed) {
+
+		Postings[] postings = Arrays.copyOf(invertedIndex, nbTerms);
+		for (int termId = 0; termId < nbTerms; termId++) {
+			for (PostingsSegment segment : changed) {
+				if (segment.hasPostings(termId)) {
+					postings[termId] = collectPostings(segmentList, termId, viewed);
+					break;
+				}
+			}
+		}
+		return postings;
+	}
+
+	/*
+	 * Postings of a term over the segments containing it, the postings of
+	 * the segment starting at the first document being used as they are
+	 * when no other segment contains the term
+	 */
+	private static Postings collectPostings(List<PostingsSegment> segmentList, int termId, PostingsSegment viewed) {
+
+		ArrayList<CompressedPostings> parts = new ArrayList<CompressedPostings>();
+		int[] docBases = new int[segmentList.size()];
+		for (PostingsSegment segment : segmentList) {
+			CompressedPostings part = segment == viewed ? segment.getLivePostings(termId) : segment.getPostings(termId);
+			if (part != null) {
+				docBases[parts.size()] = segment.getDocBase();
+				parts.add(part);
+			}
+		}
+		if (parts.size() == 1 && docBases[0] == 0) {
+			return parts.get(0);
+		}
+		return new SegmentedPostings(termId, parts.toArray(new CompressedPostings[parts.size()]),
+				Arrays.copyOf(docBases, parts.size()));
+	}
+
+	/*
+	 * Similarity over the current tables, the IDF of the terms being computed
+	 * from the number of live documents of the database
+	 */
+	private void updateIdf() {
+
+		mySimilarity = new Similarity(database, database.size() - nbDeleted, dictionary, invertedIndex, forwardIndex,
+				docLengths, docNorms);
+	}
+
+	/*
+	 * Writes the dictionary, postings, forward index, document tables and
+	 * contents as a single segment file, see IndexSegment. The segments of the
+	 * postings are merged into one first, and the deleted documents are
+	 * removed from the database. Segments are never flushed on their own:
+	 * each save merges and writes the whole index again. The queries only
+	 * wait for the switch to the merged index, not for the merge nor the
+	 * writing of the file.
+	 */
+	@Override
+	public void saveIndex(Path indexPath) throws IOException {
+
+		updateLock.lock();
+		try {
+			if (nbDeleted > 0) {
+				compact();
+			} else if (segments.size() > 1) {
+				ArrayList<PostingsSegment> merged = new ArrayList<PostingsSegment>();
+				merged.add(PostingsSegment.merge(segments, dictionary.size(), postingsCodec, docLengths, docNorms,
+						false));
+				Postings[] postings = buildPostings(merged, dictionary.size());
+				indexLock.writeLock().lock();
+				try {
+					segments = merged;
+					invertedIndex = postings;
+					updateIdf();
+				} finally {
+					indexLock.writeLock().unlock();
+				}
+			}
+			// the tables only change under the update lock, they are read without the index lock
+			CompressedPostings[] postings = new CompressedPostings[dictionary.size()];
+			for (int termId = 0; termId < postings.length; termId++) {
+				postings[termId] = segments.isEmpty() ? null : segments.get(0).getPostings(termId);
+				if (postings[termId] == null) {
+					postings[termId] = CompressedPostings.compress(termId, new PostingsList(), postingsCodec, docLengths,
+							docNorms);
+				}
+			}
+
+			if (documentStore == null) {
+				DocumentStore store = new DocumentStore();
+				for (DocumentInfo document : database) {
+					store.add(document.getContent());
+				}
+				documentStore = store;
+			}
+			int[] docIds = new int[database.size()];
+			for (int doc = 0; doc < docIds.length; doc++) {
+				docIds[doc] = database.get(doc).getId();
+			}
+			new IndexSegment(docIds, dictionary, postings, forwardIndex, docLengths, docNorms, documentStore)
+					.save(indexPath);
+		} finally {
+			updateLock.unlock();
+		}
+	}
+
+	/*
+	 * Removes the deleted documents from the database and the index, the live
+	 * documents being numbered again in the same order, and merges the
+	 * postings of all the segments into one
+	 */
+	private void compact() {
+
+		int[] live = new int[database.size() - nbDeleted];
+		int nbLive = 0;
+		for (int doc = 0; doc < database.size(); doc++) {
+			if (!isDeleted(doc)) {
+				live[nbLive++] = doc;
+			}
+		}
+		Vector<DocumentInfo> liveDatabase = new Vector<DocumentInfo>(live.length);
+		int[] liveLengths = new int[live.length];
+		double[] liveNorms = new double[live.length];
+		for (int i = 0; i < live.length; i++) {
+			liveDatabase.add(database.get(live[i]));
+			liveLengths[i] = docLengths[live[i]];
+			liveNorms[i] = docNorms[live[i]];
+		}
+		ArrayList<PostingsSegment> liveSegments = new ArrayList<PostingsSegment>();
+		liveSegments.add(PostingsSegment.merge(segments, dictionary.size(), postingsCodec, liveLengths, liveNorms,
+				true));
+
+		// the store still holds the contents of the deleted documents
+		replaceIndex(liveDatabase, null, dictionary, forwardIndex.select(live), liveLengths, liveNorms, liveSegments);
+	}
+
+	/*
+	 * Maps a segment file written by saveIndex, the postings and contents
+	 * being read from the page cache. The documents of the database read their
+	 * content from the segment when it is asked for.
+	 */
+	@Override
+	public void openIndex(Path indexPath) throws IOException {
+
+		updateLock.lock();
+		try {
+			IndexSegment segment = IndexSegment.open(indexPath);
+			Vector<DocumentInfo> newDatabase = new Vector<DocumentInfo>(segment.size());
+			DocumentStore store = segment.getDocumentStore();
+			for (int doc = 0; doc < segment.size(); doc++) {
+				newDatabase.add(new StoredDocumentInfo(segment.getDocIds()[doc], store, doc));
+			}
+			ArrayList<PostingsSegment> newSegments = new ArrayList<PostingsSegment>();
+			newSegments.add(new PostingsSegment(0, segment.size(), segment.getPostings()));
+			replaceIndex(newDatabase, store, segment.getDictionary(), segment.getForwardIndex(), segment.getDocLengths(),
+					segment.getDocNorms(), newSegments);
+		} finally {
+			updateLock.unlock();
+		}
 	}
 
 	@Override
 	public Vector<DocumentInfo> queryDatabase(String query) {
+		// all the documents, counted once the index is locked
+		return queryDatabase(query, Integer.MAX_VALUE);
+	}
+
+	/*
+	 * A query only reads the index: its state is kept in its own QueryContext
+	 * and each thread analyses its queries with its own analyzer, so any
+	 * number of threads may query the engine at once. The methods changing
+	 * the index prepare their new tables while the queries run, and only wait
+	 * for the running queries to switch to them.
+	 */
+	@Override
+	public Vector<DocumentInfo> queryDatabase(String query, int k) {
 
 		Vector<DocumentInfo> results = new Vector<DocumentInfo>();
 
@@ -132,68 +726,226 @@ public class SearchEngineImpl extends SearchEngine {
 			System.out.println("Empty query");
 			return results;
 		}
-		myQuery = myTokenizer.tokenize(query.toLowerCase(Locale.forLanguageTag("en")));
-		myQuery = enStopList.filter(myQuery);
-		myQuery = myStemmer.stem(myQuery);
-		queryWordBag = new WordBag(myQuery);
+		QueryContext context = new QueryContext(similarityType, evaluationStrategy);
+		lastQuery.set(context);
+
+		indexLock.readLock().lock();
+		try {
+			k = Math.min(k, database.size());
+			queryAnalyzers.get().analyze(query, context.dictionary, context.frequencies);
+			if (context.frequencies.size() == 0 || k <= 0) {
+				return results;
+			}
+			context.terms = mySimilarity.prepareQuery(context.dictionary, context.frequencies,
+					context.similarityType);
+
+			if (context.evaluationStrategy == TERM_AT_A_TIME) {
+				results = querrySimilarity(context, k);
+			} else if (context.evaluationStrategy == MAXSCORE) {
+				// Document-at-a-time over the essential terms only
+				MaxScoreEvaluator maxScore = new MaxScoreEvaluator(mySimilarity);
+				for (int doc : maxScore.evaluate(context.terms, k).drainDocIds()) {
+					results.add(database.get(doc));
+				}
+				context.documentsScored = maxScore.getDocumentsScored();
+			} else {
+				// Document-at-a-time with dynamic pruning
+				WandEvaluator wand = new WandEvaluator(mySimilarity, context.evaluationStrategy == BLOCK_MAX_WAND);
+				for (int doc : wand.evaluate(context.terms, k).drainDocIds()) {
+					results.add(database.get(doc));
+				}
+				context.documentsScored = wand.getDocumentsScored();
+			}
+			return results;
+		} finally {
+			indexLock.readLock().unlock();
+		}
+	}
+
+
+	/*
+	 * DESCRIPTION Scores the query term at a time over the postings of its
+	 * terms, then keeps the k most pertinent documents in a bounded heap, ties
+	 * being broken by increasing doc id
+	 * INPUT context of the prepared query, k maximum number of results
+	 * OUTPUT ordonated DocumentInfo Vector by pertinence
+	 */
+	Vector<DocumentInfo> querrySimilarity(QueryContext context, int k) {
 
+		Vector<DocumentInfo> results = new Vector<DocumentInfo>();
 
-		applicants = new HashSet<Integer>();
+		double[] scores = new double[database.size()];
+		int[] applicants = new int[database.size()];
+		int nbApplicants = mySimilarity.computeSimilarities(context.terms, scores, applicants);
+		context.documentsScored = nbApplicants;
 
-		if (queryWordBag.isEmpty()) {
+		if (nbApplicants == 0 || k <= 0) {
 			return results;
 		} else {
 
-			for (Entry<String, Integer> e : queryWordBag.entrySet()) {
-				if (invertedIndex.get(e.getKey()) != null) {
-					applicants.addAll(invertedIndex.get(e.getKey()));
-				}
+			TopKHeap topK = new TopKHeap(Math.min(k, nbApplicants));
+			for (int i = 0; i < nbApplicants; i++) {
+				topK.insert(scores[applicants[i]], applicants[i]);
 			}
 
-			results = querrySimilarity();
-
+			for (int doc : topK.drainDocIds()) {
+				results.add(database.get(doc));
+			}
 			return results;
 		}
 	}
 
 
 	/*
-	 * DESCRIPTION Test the querry through the corpus and give backs pertinence
-	 * ordonated results INPUT SimilarityType DICE or other, see Similarity.java
-	 * OUTPUT ordonated DocumentInfo Vector by pertinence
+	 * DESCRIPTION Similarity of one indexed document to the query, computed
+	 * from the term vector of the document instead of the postings
+	 * INPUT query, doc id of the document in the database
+	 * OUTPUT similarity of the document with the current similarity type
 	 */
-	public Vector<DocumentInfo> querrySimilarity() {
+	public double computeSimilarity(String query, int doc) {
 
-		DocumentInfo tempVector = new DocumentInfo();
-		Vector<DocumentInfo> results = new Vector<DocumentInfo>();
-		TreeMap<Double, Integer> preResults = new TreeMap<Double, Integer>();
+		indexLock.readLock().lock();
+		try {
+			QueryContext context = new QueryContext(similarityType, evaluationStrategy);
+			if (isDeleted(doc)) {
+				return 0.0;
+			}
+			queryAnalyzers.get().analyze(query, context.dictionary, context.frequencies);
+			if (context.frequencies.size() == 0) {
+				return 0.0;
+			}
+			context.terms = mySimilarity.prepareQuery(context.dictionary, context.frequencies, context.similarityType);
+			return mySimilarity.computeSimilarity(context.terms, doc);
+		} finally {
+			indexLock.readLock().unlock();
+		}
+	}
 
-		double temp;
 
-		if (applicants.isEmpty() || queryWordBag.isEmpty()) {
-			return results;
-		} else {
+	/*
+	 * Number of documents deleted from the database since it was indexed or
+	 * its index saved
+	 */
+	public int getNbDeleted() {
+		return nbDeleted;
+	}
 
-			for (Integer i : applicants) {
-				temp = mySimilarity.computeSimilarity(queryWordBag, index.get(i), similarityType);
-				preResults.put(temp, i);
-			}
-			// ICI, tous les resulats pour la requete sont ordonns par pertinence dans le
-			// treeMAp
 
-			for (Entry<Double, Integer> e : preResults.entrySet()) {
-				tempVector = database.get(e.getValue());
-				results.add(tempVector);
-				//System.out.println(e.getValue() + " has pertinence score of " + e.getKey());
+	/*
+	 * The database keeps the deleted documents until the index is saved, the
+	 * position of a document in it being its doc id in the index
+	 */
+	@Override
+	public Vector<DocumentInfo> getLiveDocuments() {
+
+		indexLock.readLock().lock();
+		try {
+			if (database == null) {
+				return null;
+			}
+			Vector<DocumentInfo> live = new Vector<DocumentInfo>(database.size() - nbDeleted);
+			for (int doc = 0; doc < database.size(); doc++) {
+				if (nbDeleted == 0 || !isDeleted(doc)) {
+					live.add(database.get(doc));
+				}
 			}
+			return live;
+		} finally {
+			indexLock.readLock().unlock();
+		}
+	}
 
-			// Reversing the collection in adequation with the UI display
-			Collections.reverse(results);
-			return results;
+	/*
+	 * Term vectors of the indexed documents by doc id, with the term ids of the
+	 * dictionary
+	 */
+	public ForwardIndex getForwardIndex() {
+		return forwardIndex;
+	}
+
+
+	/*
+	 * Number of segments of the inverted index, see addDocuments
+	 */
+	public int getNbSegments() {
+		return segments.size();
+	}
+
+
+	public int getIndexingThreads() {
+		return indexingThreads;
+	}
+
+
+	/*
+	 * Number of threads analysing the documents in indexDatabase
+	 */
+	public void setIndexingThreads(int indexingThreads) {
+		this.indexingThreads = indexingThreads;
+	}
+
+
+	public int getEvaluationStrategy() {
+		return evaluationStrategy;
+	}
+
+
+	/*
+	 * TERM_AT_A_TIME scores every document sharing a term with the query, WAND,
+	 * BLOCK_MAX_WAND and MAXSCORE skip the documents that cannot enter the top-k
+	 */
+	public void setEvaluationStrategy(int evaluationStrategy) {
+		this.evaluationStrategy = evaluationStrategy;
+	}
+
+
+	/*
+	 * Number of documents fully scored by the last query of the calling thread
+	 */
+	public int getDocumentsScored() {
+		QueryContext context = lastQuery.get();
+		return context == null ? 0 : context.documentsScored;
+	}
+
+
+	/*
+	 * Cache of the English stems, with its hit rate
+	 */
+	public StemCache getStemCache() {
+		return enStemCache;
+	}
+
+
+	/*
+	 * Number of English surface forms whose stem is cached, from the next
+	 * indexing on
+	 */
+	public void setStemCacheSize(int stemCacheSize) {
+		updateLock.lock();
+		indexLock.writeLock().lock();
+		try {
+			enStemCache = new StemCache(Stemmer.StemmerLanguage.ENGLISH, stemCacheSize);
+			queryAnalyzers = ThreadLocal.withInitial(this::newAnalyzer);
+		} finally {
+			indexLock.writeLock().unlock();
+			updateLock.unlock();
 		}
 	}
 
 
+	public PostingsCodec getPostingsCodec() {
+		return postingsCodec;
+	}
+
+
+	/*
+	 * Codec used to compress the postings, taken into account at the next indexing
+	 */
+	public void setPostingsCodec(PostingsCodec postingsCodec) {
+		this.postingsCodec = postingsCodec;
+	}
+
+
 	public int getSimilarityType() {
 		return similarityType;
 	}
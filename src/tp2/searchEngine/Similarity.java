@@ -1,11 +1,13 @@
 package tp2.searchEngine;
 
-import java.util.Map.Entry;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Vector;
 
-import tp.WordBag;
+import tp2.searchEngine.index.ForwardIndex;
+import tp2.searchEngine.index.Postings;
+import tp2.searchEngine.index.PostingsCursor;
+import tp2.searchEngine.index.TermDictionary;
+import tp2.searchEngine.index.TermFrequencies;
 
 public class Similarity {
 
@@ -15,128 +17,215 @@ public class Similarity {
 	public final static Integer VECTORIDF_NONORM = 3;
 
 	int dbSize;
-	HashMap<String, ArrayList<Integer>> invertedIndex;
-
-	public Similarity(Vector<DocumentInfo> database, HashMap<String, ArrayList<Integer>> invertedIndex) {
+	int nbLiveDocuments;
+	TermDictionary dictionary;
+	Postings[] invertedIndex;
+	ForwardIndex forwardIndex;
+	int[] docLengths;
+	double[] docNorms;
+
+	/*
+	 * invertedIndex, forwardIndex, docLengths and docNorms are the tables
+	 * computed at index time, see SearchEngineImpl.indexDatabase, the first
+	 * one being indexed by the term ids of the dictionary. The IDF of a query
+	 * term is computed from its document frequency in the dictionary and the
+	 * number of live documents, so deleting a document only has to update the
+	 * document frequencies of its own terms.
+	 */
+	public Similarity(Vector<DocumentInfo> database, int nbLiveDocuments, TermDictionary dictionary,
+			Postings[] invertedIndex, ForwardIndex forwardIndex, int[] docLengths, double[] docNorms) {
 		dbSize = database.size();
+		this.nbLiveDocuments = nbLiveDocuments;
+		this.dictionary = dictionary;
 		this.invertedIndex = invertedIndex;
+		this.forwardIndex = forwardIndex;
+		this.docLengths = docLengths;
+		this.docNorms = docNorms;
 	}
 
-	public double computeIdf(String term) {
-
-		return 0.0;
+	/*
+	 * Inverse document frequency of a term, 1 if the term has no posting
+	 */
+	public static double computeIdf(int dbSize, int docFrequency) {
+		if (docFrequency == 0) {
+			return 1.0;
+		}
+		return Math.log((double) dbSize / (double) docFrequency);
 	}
 
-	public double computeSimilarity(WordBag querry, WordBag applicant, Integer similarityType) {
-
-		double result = 0;
-		double numerator, denomQuery, denomApplicant;
-
-		switch (similarityType) {
-
-		// AGGREGATION MODEL -- DICE
-		case 0:
+	/*
+	 * sqrt of the sum of the squared frequencies of the terms of a text
+	 */
+	public static double computeNorm(TermFrequencies frequencies) {
+		double sum = 0;
+		for (int i = 0; i < frequencies.size(); i++) {
+			sum += (double) frequencies.getTf(i) * (double) frequencies.getTf(i);
+		}
+		return Math.sqrt(sum);
+	}
 
-			double commonWordsCounter = 0;
+	/*
+	 * DESCRIPTION Gathers the postings, weights and score upper bounds of the
+	 * query terms found in the index, in query order
+	 * INPUT query term frequencies with the dictionary of the query giving their
+	 * terms, similarity type
+	 * OUTPUT QueryTerms used by the query evaluators
+	 */
+	public QueryTerms prepareQuery(TermDictionary queryDictionary, TermFrequencies querry, Integer similarityType) {
+
+		ArrayList<Postings> found = new ArrayList<Postings>();
+		ArrayList<Integer> queryTfs = new ArrayList<Integer>();
+
+		for (int i = 0; i < querry.size(); i++) {
+			int termId = dictionary.getId(queryDictionary.getTerm(querry.getTermId(i)));
+			if (termId >= 0) {
+				found.add(invertedIndex[termId]);
+				queryTfs.add(querry.getTf(i));
+			}
+		}
 
-			for (Entry<String, Integer> e : querry.entrySet()) {
+		Postings[] postings = found.toArray(new Postings[found.size()]);
+		double[] weights = new double[postings.length];
+		double[] upperBounds = new double[postings.length];
+		double queryNorm = computeNorm(querry);
 
-				for (Entry<String, Integer> e2 : applicant.entrySet()) {
+		for (int i = 0; i < postings.length; i++) {
+			weights[i] = termWeight(postings[i], queryTfs.get(i), similarityType);
+			upperBounds[i] = upperBound(weights[i], postings[i].getMaxTf(), postings[i].getMaxNormalizedTf(),
+					postings[i].getMinLength(), querry.size(), queryNorm, similarityType);
+		}
+		return new QueryTerms(postings, weights, upperBounds, querry.size(), queryNorm, similarityType);
+	}
 
-					if (e.getKey().equals(e2.getKey())) {
-						commonWordsCounter++;
-					}
+	/*
+	 * DESCRIPTION Term-at-a-time scoring: walks the postings of each query term
+	 * and accumulates its contribution in a dense score array indexed by doc id,
+	 * then normalizes the scores of the touched documents.
+	 * INPUT query terms, scores array of database size filled with 0, touched
+	 * array receiving the ids of the scored documents
+	 * OUTPUT number of scored documents
+	 */
+	public int computeSimilarities(QueryTerms query, double[] scores, int[] touched) {
+
+		boolean[] visited = new boolean[scores.length];
+		int nbTouched = 0;
+
+		for (int t = 0; t < query.size(); t++) {
+			PostingsCursor cursor = query.postings[t].cursor();
+			for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+				if (!visited[doc]) {
+					visited[doc] = true;
+					touched[nbTouched++] = doc;
 				}
+				scores[doc] += contribution(query, t, cursor.tf());
 			}
+		}
 
-			result = ((2 * commonWordsCounter) / ((double) querry.getSize() + (double) applicant.getSize()));
-
-			return result;
+		for (int i = 0; i < nbTouched; i++) {
+			int doc = touched[i];
+			scores[doc] = normalize(query, scores[doc], doc);
+		}
+		return nbTouched;
+	}
 
-		// VECTOR MODEL
-		case 1:
-			numerator = 0;
-			denomApplicant = 0;
-			denomQuery = 0;
-			result = 0;
-			// numerator, if mot commun, += produit de leur freq respectives
-			// denomQuery sqrt sommE des carrs des frquences non nulles
-			// denomApplicant sqrt sommE des carrs des frquences non nulle
-
-			for (Entry<String, Integer> e : querry.entrySet()) {
-
-				for (Entry<String, Integer> e2 : applicant.entrySet()) {
-					denomQuery += Math.pow((double) e.getValue(), 2.0);
-					denomApplicant += Math.pow((double) e2.getValue(), 2.0);
-
-					if (e.getKey().equals(e2.getKey())) {
-						numerator += ((double) e.getValue() * (double) e2.getValue());
-					}
-				}
+	/*
+	 * DESCRIPTION Document-at-a-time scoring of a single document: merges the
+	 * sorted term ids of the query with the term vector of the document in the
+	 * forward index
+	 * INPUT query terms, doc id
+	 * OUTPUT similarity of the document to the query, 0 if they share no term
+	 */
+	public double computeSimilarity(QueryTerms query, int doc) {
+
+		int[] tfs = new int[query.size()];
+		if (forwardIndex.intersect(doc, query.sortedTermIds, tfs) == 0) {
+			return 0.0;
+		}
+		double score = 0.0;
+		for (int i = 0; i < tfs.length; i++) {
+			if (tfs[i] > 0) {
+				score += contribution(query, query.sortedTerms[i], tfs[i]);
 			}
+		}
+		return normalize(query, score, doc);
+	}
 
-			result = (numerator / ((Math.sqrt(denomQuery)) * (Math.sqrt(denomApplicant))));
-			return result;
+	/*
+	 * Unnormalized contribution of the t-th query term to the score of a
+	 * document, given the frequency of the term in the document
+	 */
+	public double contribution(QueryTerms query, int t, int tf) {
+		if (query.similarityType == 0) {
+			return query.weights[t];
+		}
+		return query.weights[t] * tf;
+	}
 
-		// VECTOR IDF MODEL
+	/*
+	 * Turns the sum of the contributions of the query terms to a document into
+	 * its similarity to the query
+	 */
+	public double normalize(QueryTerms query, double score, int doc) {
+		switch (query.similarityType) {
+		case 0:
+			return (2 * score) / ((double) query.queryLength + (double) docLengths[doc]);
+		case 1:
 		case 2:
-			numerator = 0;
-			denomApplicant = 0;
-			denomQuery = 0;
-			result = 0;
-			double idf = 0;
-
-			for (Entry<String, Integer> e : querry.entrySet()) {
-
-				for (Entry<String, Integer> e2 : applicant.entrySet()) {
-					denomQuery += Math.pow((double) e.getValue(), 2.0);
-					denomApplicant += Math.pow((double) e2.getValue(), 2.0);
-
-					if (e.getKey().equals(e2.getKey())) {
-						if(invertedIndex.get(e.getKey()).size()!=0) {
-							idf = Math.log(dbSize/(invertedIndex.get(e.getKey()).size()));
-						} else {
-							idf = 1;
-						}
-						numerator += (((double) e.getValue() * (double) e2.getValue())*idf);
-					}
-				}
-			}
+			return score / (query.queryNorm * docNorms[doc]);
+		case 3:
+			return score;
+		default:
+			return 0.0;
+		}
+	}
 
-			result = (numerator / ((Math.sqrt(denomQuery)) * (Math.sqrt(denomApplicant))));
-			return result;
-			
-			// VECTOR IDF MODEL NO NORM
-					case 3:
-						numerator = 0;
-						denomApplicant = 0;
-						denomQuery = 0;
-						result = 0;
-						double idfnonorm = 0;
-
-						for (Entry<String, Integer> e : querry.entrySet()) {
-
-							for (Entry<String, Integer> e2 : applicant.entrySet()) {
-								denomQuery += Math.pow((double) e.getValue(), 2.0);
-								denomApplicant += Math.pow((double) e2.getValue(), 2.0);
-
-								if (e.getKey().equals(e2.getKey())) {
-									if(invertedIndex.get(e.getKey()).size()!=0) {
-										idf = Math.log(dbSize/(invertedIndex.get(e.getKey()).size()));
-									} else {
-										idf = 1;
-									}
-									numerator += (((double) e.getValue() * (double) e2.getValue())*idfnonorm);
-								}
-							}
-						}
-
-						return numerator;
+	/*
+	 * Highest normalized contribution of the t-th query term to a document of
+	 * the block reached by the cursor
+	 */
+	public double blockUpperBound(QueryTerms query, int t, PostingsCursor cursor) {
+		return upperBound(query.weights[t], cursor.blockMaxTf(), cursor.blockMaxNormalizedTf(),
+				cursor.blockMinLength(), query.queryLength, query.queryNorm, query.similarityType);
+	}
 
+	/*
+	 * Highest normalized contribution of a term of the given weight to documents
+	 * with the given impact statistics
+	 */
+	private double upperBound(double weight, int maxTf, double maxNormalizedTf, int minLength, int queryLength,
+			double queryNorm, Integer similarityType) {
+		switch (similarityType) {
+		case 0:
+			return (2 * weight) / ((double) queryLength + (double) minLength);
+		case 1:
+		case 2:
+			return weight * maxNormalizedTf / queryNorm;
+		case 3:
+			return weight * maxTf;
 		default:
 			return 0.0;
-
 		}
+	}
 
+	/*
+	 * Weight of a query term, multiplied by the frequency of the term in each
+	 * document for vector models
+	 */
+	private double termWeight(Postings postings, int queryTf, Integer similarityType) {
+		switch (similarityType) {
+		// AGGREGATION MODEL -- DICE: counts the common words
+		case 0:
+			return 1.0;
+		// VECTOR MODEL
+		case 1:
+			return (double) queryTf;
+		// VECTOR IDF MODELS
+		case 2:
+		case 3:
+			return (double) queryTf
+					* computeIdf(nbLiveDocuments, dictionary.getDocFrequency(postings.getTermId()));
+		default:
+			return 0.0;
+		}
 	}
 }
@@ -0,0 +1,46 @@
+package tp2.searchEngine;
+
+import tp2.searchEngine.index.DocumentStore;
+
+/**
+ * DocumentInfo whose content stays compressed in a DocumentStore until it is
+ * read: only the ID of the document and its position in the store are kept
+ * in memory, and getContent decompresses the content at each call.
+ */
+public class StoredDocumentInfo extends DocumentInfo {
+
+	/**
+	 * The store holding the content.
+	 */
+	protected final DocumentStore store;
+
+	/**
+	 * The ID of the document in the store.
+	 */
+	protected final int storeId;
+
+	/**
+	 * Builds a DocumentInfo whose content is read from a store.
+	 * @param id The ID of the document.
+	 * @param store The store holding the content of the document.
+	 * @param storeId The ID of the document in the store.
+	 */
+	public StoredDocumentInfo(int id, DocumentStore store, int storeId) {
+		this.id = id;
+		this.store = store;
+		this.storeId = storeId;
+	}
+
+	/**
+	 * Returns the content of the document, read from the store unless it was
+	 * set with setContent.
+	 * @return The content of the document.
+	 */
+	@Override
+	public String getContent() {
+		if (this.content != null) {
+			return this.content;
+		}
+		return this.store.getContent(this.storeId);
+	}
+}
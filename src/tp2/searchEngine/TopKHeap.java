@@ -0,0 +1,134 @@
+package tp2.searchEngine;
+
+/**
+ * Bounded min-heap keeping the k best (score, document ID) pairs of a query.
+ * Scores and IDs are stored in parallel primitive arrays. Ties on the score are
+ * broken deterministically in favour of the smallest document ID, so that
+ * documents with equal scores are all kept and always ranked the same way.
+ */
+public class TopKHeap {
+
+	/**
+	 * Scores of the entries, heap-ordered with the worst entry at the root.
+	 */
+	private final double[] scores;
+
+	/**
+	 * Document IDs of the entries, parallel to scores.
+	 */
+	private final int[] docIds;
+
+	/**
+	 * Number of entries in the heap.
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty heap.
+	 * @param k The maximum number of entries kept by the heap.
+	 */
+	public TopKHeap( int k ) {
+		this.scores = new double[Math.max( k, 0 )];
+		this.docIds = new int[Math.max( k, 0 )];
+		this.size = 0;
+	}
+
+	/**
+	 * Offers a document to the heap.
+	 * @param score The score of the document.
+	 * @param docId The ID of the document.
+	 * @return True if the document entered the heap, false otherwise.
+	 */
+	public boolean insert( double score, int docId ) {
+		if ( this.size < this.scores.length ) {
+			this.scores[this.size] = score;
+			this.docIds[this.size] = docId;
+			this.siftUp( this.size++ );
+			return true;
+		}
+		if ( this.size == 0 || !this.isBetter( score, docId, this.scores[0], this.docIds[0] ) ) {
+			return false;
+		}
+		this.scores[0] = score;
+		this.docIds[0] = docId;
+		this.siftDown( 0 );
+		return true;
+	}
+
+	/**
+	 * Returns the score a document must exceed to enter the heap.
+	 * @return The smallest score of the heap if it is full, negative infinity otherwise.
+	 */
+	public double threshold() {
+		if ( this.size < this.scores.length ) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		return this.size == 0 ? Double.POSITIVE_INFINITY : this.scores[0];
+	}
+
+	/**
+	 * Returns the number of entries in the heap.
+	 * @return The number of entries in the heap.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Empties the heap and returns its document IDs in decreasing order of score.
+	 * @return The IDs of the documents of the heap, best first.
+	 */
+	public int[] drainDocIds() {
+		int[] sorted = new int[this.size];
+		while ( this.size > 0 ) {
+			sorted[this.size - 1] = this.docIds[0];
+			this.size--;
+			this.scores[0] = this.scores[this.size];
+			this.docIds[0] = this.docIds[this.size];
+			this.siftDown( 0 );
+		}
+		return sorted;
+	}
+
+	// true if (s1, d1) ranks before (s2, d2)
+	private boolean isBetter( double s1, int d1, double s2, int d2 ) {
+		return s1 > s2 || ( s1 == s2 && d1 < d2 );
+	}
+
+	private void siftUp( int i ) {
+		double score = this.scores[i];
+		int docId = this.docIds[i];
+		while ( i > 0 ) {
+			int parent = ( i - 1 ) >>> 1;
+			if ( !this.isBetter( this.scores[parent], this.docIds[parent], score, docId ) ) {
+				break;
+			}
+			this.scores[i] = this.scores[parent];
+			this.docIds[i] = this.docIds[parent];
+			i = parent;
+		}
+		this.scores[i] = score;
+		this.docIds[i] = docId;
+	}
+
+	private void siftDown( int i ) {
+		double score = this.scores[i];
+		int docId = this.docIds[i];
+		int half = this.size >>> 1;
+		while ( i < half ) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if ( right < this.size && this.isBetter( this.scores[child], this.docIds[child], this.scores[right], this.docIds[right] ) ) {
+				child = right;
+			}
+			if ( !this.isBetter( score, docId, this.scores[child], this.docIds[child] ) ) {
+				break;
+			}
+			this.scores[i] = this.scores[child];
+			this.docIds[i] = this.docIds[child];
+			i = child;
+		}
+		this.scores[i] = score;
+		this.docIds[i] = docId;
+	}
+}
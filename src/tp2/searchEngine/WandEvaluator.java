@@ -0,0 +1,163 @@
+package tp2.searchEngine;
+
+import tp2.searchEngine.index.PostingsCursor;
+
+/**
+ * Document-at-a-time query evaluator implementing WAND and Block-Max WAND
+ * dynamic pruning. Cursors are kept sorted by current document; the pivot is
+ * the first document at which the sum of the upper bounds of the preceding
+ * terms could beat the k-th best score found so far. Documents before the
+ * pivot cannot enter the top-k and are skipped with nextGEQ. Block-Max WAND
+ * further checks the pivot against the block-level upper bounds and skips
+ * the whole blocks that cannot beat the threshold.
+ * Contributions are summed in query order, so scores are identical to the
+ * ones of the term-at-a-time evaluation.
+ */
+public class WandEvaluator {
+
+	/**
+	 * Relative slack added to upper bounds to absorb floating point rounding.
+	 */
+	static final double BOUND_TOLERANCE = 1e-9;
+
+	private final Similarity similarity;
+
+	private final boolean blockMax;
+
+	private int documentsScored;
+
+	/**
+	 * Creates a WAND evaluator.
+	 * @param similarity The similarity computing the scores and upper bounds.
+	 * @param blockMax True to use Block-Max WAND, false for plain WAND.
+	 */
+	public WandEvaluator(Similarity similarity, boolean blockMax) {
+		this.similarity = similarity;
+		this.blockMax = blockMax;
+	}
+
+	/**
+	 * Returns the number of documents fully scored during the last evaluation.
+	 * @return The number of documents scored.
+	 */
+	public int getDocumentsScored() {
+		return documentsScored;
+	}
+
+	/**
+	 * Evaluates a query.
+	 * @param query The query terms.
+	 * @param k The number of results wanted.
+	 * @return The heap of the k best documents.
+	 */
+	public TopKHeap evaluate(QueryTerms query, int k) {
+
+		int n = query.size();
+		TopKHeap topK = new TopKHeap(k);
+		PostingsCursor[] cursors = new PostingsCursor[n];
+		// term indexes sorted by current document of their cursor
+		int[] order = new int[n];
+
+		documentsScored = 0;
+		for (int t = 0; t < n; t++) {
+			cursors[t] = query.postings[t].cursor();
+			cursors[t].nextDoc();
+			order[t] = t;
+		}
+
+		while (true) {
+			sortByDoc(order, cursors);
+
+			// find the pivot
+			double threshold = topK.threshold();
+			double bound = 0;
+			int pivot = -1;
+			for (int i = 0; i < n && cursors[order[i]].docId() != PostingsCursor.NO_MORE_DOCS; i++) {
+				bound += query.upperBounds[order[i]];
+				if (canEnter(bound, threshold)) {
+					pivot = i;
+					break;
+				}
+			}
+			if (pivot < 0) {
+				break;
+			}
+			int pivotDoc = cursors[order[pivot]].docId();
+			while (pivot + 1 < n && cursors[order[pivot + 1]].docId() == pivotDoc) {
+				pivot++;
+			}
+
+			if (blockMax && !canEnterBlocks(query, cursors, order, pivot, pivotDoc, threshold)) {
+				// no document before the end of the current blocks can qualify
+				int next = PostingsCursor.NO_MORE_DOCS;
+				for (int i = 0; i <= pivot; i++) {
+					int lastDoc = cursors[order[i]].shallowAdvance(pivotDoc);
+					next = Math.min(next, lastDoc == PostingsCursor.NO_MORE_DOCS ? lastDoc : lastDoc + 1);
+				}
+				if (pivot + 1 < n) {
+					next = Math.min(next, cursors[order[pivot + 1]].docId());
+				}
+				for (int i = 0; i <= pivot; i++) {
+					cursors[order[i]].nextGEQ(next);
+				}
+			} else if (cursors[order[0]].docId() == pivotDoc) {
+				score(query, cursors, pivotDoc, topK);
+			} else {
+				for (int i = 0; i < pivot; i++) {
+					cursors[order[i]].nextGEQ(pivotDoc);
+				}
+			}
+		}
+		return topK;
+	}
+
+	// scores the document all cursors up to the pivot are on, then moves them forward
+	private void score(QueryTerms query, PostingsCursor[] cursors, int doc, TopKHeap topK) {
+		double score = 0;
+		for (int t = 0; t < cursors.length; t++) {
+			if (cursors[t].docId() == doc) {
+				score += similarity.contribution(query, t, cursors[t].tf());
+			}
+		}
+		documentsScored++;
+		topK.insert(similarity.normalize(query, score, doc), doc);
+		for (int t = 0; t < cursors.length; t++) {
+			if (cursors[t].docId() == doc) {
+				cursors[t].nextDoc();
+			}
+		}
+	}
+
+	// block-max check of the pivot document
+	private boolean canEnterBlocks(QueryTerms query, PostingsCursor[] cursors, int[] order, int pivot, int pivotDoc,
+			double threshold) {
+		double bound = 0;
+		for (int i = 0; i <= pivot; i++) {
+			cursors[order[i]].shallowAdvance(pivotDoc);
+			bound += similarity.blockUpperBound(query, order[i], cursors[order[i]]);
+		}
+		return canEnter(bound, threshold);
+	}
+
+	/*
+	 * Documents are evaluated by increasing id, so a document tying with the
+	 * threshold would lose the tie-break: the bound must be strictly greater
+	 */
+	static boolean canEnter(double bound, double threshold) {
+		return bound * (1 + BOUND_TOLERANCE) > threshold;
+	}
+
+	// insertion sort, queries have few terms and the order changes little between steps
+	private static void sortByDoc(int[] order, PostingsCursor[] cursors) {
+		for (int i = 1; i < order.length; i++) {
+			int t = order[i];
+			int doc = cursors[t].docId();
+			int j = i - 1;
+			while (j >= 0 && cursors[order[j]].docId() > doc) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = t;
+		}
+	}
+}
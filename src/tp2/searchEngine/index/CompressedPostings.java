@@ -0,0 +1,446 @@
+package tp2.searchEngine.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable postings list of a term, compressed in blocks of
+ * {@link PostingsCodec#BLOCK_SIZE} postings by a {@link PostingsCodec}.
+ * Document IDs are stored as gaps from the previous posting of the list.
+ * Each block has a skip entry (last document ID and position of the block) and
+ * impact statistics (highest term frequency, highest term frequency divided
+ * by the document norm, smallest document length) bounding the score any of
+ * its postings can reach. Postings are read back through a {@link PostingsCursor}.
+ * A view of the list skipping deleted documents is given by {@link #withLiveDocs},
+ * the statistics then still counting the deleted documents.
+ */
+public class CompressedPostings implements Postings {
+
+	/**
+	 * Dense ID of the term.
+	 */
+	private final int termId;
+
+	/**
+	 * Number of postings, i.e. document frequency of the term.
+	 */
+	private final int docFrequency;
+
+	/**
+	 * Codec used to encode the blocks.
+	 */
+	private final PostingsCodec codec;
+
+	/**
+	 * Buffer holding the encoded blocks.
+	 */
+	private final ByteBuffer data;
+
+	/**
+	 * Last document ID of each block.
+	 */
+	private final int[] blockLastDocs;
+
+	/**
+	 * Position of each block in the buffer.
+	 */
+	private final int[] blockOffsets;
+
+	/**
+	 * Highest term frequency of each block.
+	 */
+	private final int[] blockMaxTfs;
+
+	/**
+	 * Highest term frequency divided by the document norm of each block.
+	 */
+	private final double[] blockMaxNormalizedTfs;
+
+	/**
+	 * Smallest document length of each block.
+	 */
+	private final int[] blockMinLengths;
+
+	/**
+	 * Highest term frequency of the list.
+	 */
+	private final int maxTf;
+
+	/**
+	 * Highest normalized term frequency of the list.
+	 */
+	private final double maxNormalizedTf;
+
+	/**
+	 * Smallest document length of the list.
+	 */
+	private final int minLength;
+
+	/**
+	 * Live documents of the list, null if none of its documents is deleted.
+	 */
+	private final LiveDocs liveDocs;
+
+	/**
+	 * Creates a compressed postings list over already encoded blocks.
+	 * @param termId The dense ID of the term.
+	 * @param docFrequency The number of postings.
+	 * @param codec The codec used to encode the blocks.
+	 * @param data The buffer holding the encoded blocks.
+	 * @param blockLastDocs The last document ID of each block.
+	 * @param blockOffsets The position of each block in the buffer.
+	 * @param blockMaxTfs The highest term frequency of each block.
+	 * @param blockMaxNormalizedTfs The highest normalized term frequency of each block.
+	 * @param blockMinLengths The smallest document length of each block.
+	 */
+	public CompressedPostings( int termId, int docFrequency, PostingsCodec codec, ByteBuffer data,
+			int[] blockLastDocs, int[] blockOffsets, int[] blockMaxTfs,
+			double[] blockMaxNormalizedTfs, int[] blockMinLengths ) {
+		this.termId = termId;
+		this.docFrequency = docFrequency;
+		this.codec = codec;
+		this.data = data;
+		this.blockLastDocs = blockLastDocs;
+		this.blockOffsets = blockOffsets;
+		this.blockMaxTfs = blockMaxTfs;
+		this.blockMaxNormalizedTfs = blockMaxNormalizedTfs;
+		this.blockMinLengths = blockMinLengths;
+		int maxTf = 0;
+		double maxNormalizedTf = 0;
+		int minLength = Integer.MAX_VALUE;
+		for ( int b = 0 ; b < blockLastDocs.length ; b++ ) {
+			maxTf = Math.max( maxTf, blockMaxTfs[b] );
+			maxNormalizedTf = Math.max( maxNormalizedTf, blockMaxNormalizedTfs[b] );
+			minLength = Math.min( minLength, blockMinLengths[b] );
+		}
+		this.maxTf = maxTf;
+		this.maxNormalizedTf = maxNormalizedTf;
+		this.minLength = minLength;
+		this.liveDocs = null;
+	}
+
+	/**
+	 * Creates a view of a list whose cursors skip the deleted documents.
+	 */
+	private CompressedPostings( CompressedPostings postings, LiveDocs liveDocs ) {
+		this.termId = postings.termId;
+		this.docFrequency = postings.docFrequency;
+		this.codec = postings.codec;
+		this.data = postings.data;
+		this.blockLastDocs = postings.blockLastDocs;
+		this.blockOffsets = postings.blockOffsets;
+		this.blockMaxTfs = postings.blockMaxTfs;
+		this.blockMaxNormalizedTfs = postings.blockMaxNormalizedTfs;
+		this.blockMinLengths = postings.blockMinLengths;
+		this.maxTf = postings.maxTf;
+		this.maxNormalizedTf = postings.maxNormalizedTf;
+		this.minLength = postings.minLength;
+		this.liveDocs = liveDocs;
+	}
+
+	/**
+	 * Returns a view of the list whose cursors skip the deleted documents,
+	 * the encoded blocks being shared.
+	 * @param liveDocs The live documents, by the document IDs of the list.
+	 * @return The view of the live postings.
+	 */
+	public CompressedPostings withLiveDocs( LiveDocs liveDocs ) {
+		return new CompressedPostings( this, liveDocs );
+	}
+
+	/**
+	 * Compresses a postings list and computes its skip and impact data.
+	 * @param termId The dense ID of the term of the list.
+	 * @param postings The postings list to compress.
+	 * @param codec The codec to use.
+	 * @param docLengths The number of distinct terms of each document.
+	 * @param docNorms The norm of each document vector.
+	 * @return The compressed postings list.
+	 */
+	public static CompressedPostings compress( int termId, PostingsList postings, PostingsCodec codec,
+			int[] docLengths, double[] docNorms ) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int[] docGaps = new int[PostingsCodec.BLOCK_SIZE];
+		int[] tfs = new int[PostingsCodec.BLOCK_SIZE];
+		int nbBlocks = ( postings.size() + PostingsCodec.BLOCK_SIZE - 1 ) / PostingsCodec.BLOCK_SIZE;
+		int[] blockLastDocs = new int[nbBlocks];
+		int[] blockOffsets = new int[nbBlocks];
+		int[] blockMaxTfs = new int[nbBlocks];
+		double[] blockMaxNormalizedTfs = new double[nbBlocks];
+		int[] blockMinLengths = new int[nbBlocks];
+		int previous = -1;
+
+		for ( int block = 0 ; block < nbBlocks ; block++ ) {
+			int start = block * PostingsCodec.BLOCK_SIZE;
+			int length = Math.min( PostingsCodec.BLOCK_SIZE, postings.size() - start );
+			blockMinLengths[block] = Integer.MAX_VALUE;
+			for ( int i = 0 ; i < length ; i++ ) {
+				int doc = postings.getDocId( start + i );
+				int tf = postings.getTf( start + i );
+				docGaps[i] = doc - previous - 1;
+				tfs[i] = tf - 1;
+				previous = doc;
+				blockMaxTfs[block] = Math.max( blockMaxTfs[block], tf );
+				blockMaxNormalizedTfs[block] = Math.max( blockMaxNormalizedTfs[block], tf / docNorms[doc] );
+				blockMinLengths[block] = Math.min( blockMinLengths[block], docLengths[doc] );
+			}
+			blockLastDocs[block] = previous;
+			blockOffsets[block] = out.size();
+			codec.encodeBlock( docGaps, tfs, length, out );
+		}
+		return new CompressedPostings( termId, postings.size(), codec,
+				ByteBuffer.wrap( out.toByteArray() ), blockLastDocs, blockOffsets,
+				blockMaxTfs, blockMaxNormalizedTfs, blockMinLengths );
+	}
+
+	/**
+	 * Writes the postings list in the format read by {@link #read}.
+	 * @param out The stream to write into.
+	 * @throws IOException If the postings cannot be written.
+	 */
+	public void write( DataOutputStream out ) throws IOException {
+		out.writeInt( this.codec.getId() );
+		out.writeInt( this.docFrequency );
+		out.writeInt( this.blockLastDocs.length );
+		IndexSegment.writeInts( out, this.blockLastDocs, this.blockLastDocs.length );
+		IndexSegment.writeInts( out, this.blockOffsets, this.blockOffsets.length );
+		IndexSegment.writeInts( out, this.blockMaxTfs, this.blockMaxTfs.length );
+		IndexSegment.writeDoubles( out, this.blockMaxNormalizedTfs, this.blockMaxNormalizedTfs.length );
+		IndexSegment.writeInts( out, this.blockMinLengths, this.blockMinLengths.length );
+		// the data of a reopened list is a slice of the mapped file, whose
+		// capacity runs to the end of the file: only its limit is written
+		ByteBuffer data = this.data.duplicate();
+		data.rewind();
+		out.writeInt( data.remaining() );
+		if ( data.hasArray() ) {
+			out.write( data.array(), data.arrayOffset(), data.remaining() );
+		} else {
+			while ( data.hasRemaining() ) {
+				out.write( data.get() );
+			}
+		}
+	}
+
+	/**
+	 * Reads a postings list written by {@link #write}. The skip and impact
+	 * data are copied, while the encoded blocks are read in place from the
+	 * buffer, which can be a mapped file.
+	 * @param termId The dense ID of the term of the list.
+	 * @param in The buffer, positioned at the start of the list and moved after its end.
+	 * @return The postings list.
+	 */
+	public static CompressedPostings read( int termId, ByteBuffer in ) {
+		PostingsCodec codec = PostingsCodec.forId( in.getInt() );
+		int docFrequency = in.getInt();
+		int nbBlocks = in.getInt();
+		int[] blockLastDocs = IndexSegment.readInts( in, nbBlocks );
+		int[] blockOffsets = IndexSegment.readInts( in, nbBlocks );
+		int[] blockMaxTfs = IndexSegment.readInts( in, nbBlocks );
+		double[] blockMaxNormalizedTfs = IndexSegment.readDoubles( in, nbBlocks );
+		int[] blockMinLengths = IndexSegment.readInts( in, nbBlocks );
+		int length = in.getInt();
+		ByteBuffer data = in.slice();
+		data.limit( length );
+		in.position( in.position() + length );
+		return new CompressedPostings( termId, docFrequency, codec, data, blockLastDocs, blockOffsets,
+				blockMaxTfs, blockMaxNormalizedTfs, blockMinLengths );
+	}
+
+	/**
+	 * Returns the dense ID of the term, used to look up per-term tables.
+	 * @return The ID of the term of the list.
+	 */
+	@Override
+	public int getTermId() {
+		return this.termId;
+	}
+
+	/**
+	 * Returns the number of postings, i.e. the document frequency of the term.
+	 * @return The number of postings in the list.
+	 */
+	@Override
+	public int size() {
+		return this.docFrequency;
+	}
+
+	/**
+	 * Returns the highest term frequency of the list.
+	 * @return The highest term frequency, 0 if the list is empty.
+	 */
+	@Override
+	public int getMaxTf() {
+		return this.maxTf;
+	}
+
+	/**
+	 * Returns the highest term frequency divided by the document norm of the list.
+	 * @return The highest normalized term frequency, 0 if the list is empty.
+	 */
+	@Override
+	public double getMaxNormalizedTf() {
+		return this.maxNormalizedTf;
+	}
+
+	/**
+	 * Returns the smallest length of the documents of the list.
+	 * @return The smallest document length, Integer.MAX_VALUE if the list is empty.
+	 */
+	@Override
+	public int getMinLength() {
+		return this.minLength;
+	}
+
+	/**
+	 * Returns a new cursor over the postings.
+	 * @return A cursor positioned before the first posting.
+	 */
+	@Override
+	public PostingsCursor cursor() {
+		return new BlockCursor();
+	}
+
+	/**
+	 * Finds the first block from a given one whose last document is at least
+	 * the target: gallops over the skip entries, then searches by bisection
+	 * in the last range, so the cost is logarithmic in the distance jumped.
+	 * @param from The first block to consider.
+	 * @param target The document ID to reach.
+	 * @return The index of the block, or the number of blocks if there is none.
+	 */
+	private int findBlock( int from, int target ) {
+		// blocks before low end before the target, block high (if any) reaches it
+		int low = from;
+		int high = from;
+		int step = 1;
+		while ( high < this.blockLastDocs.length && this.blockLastDocs[high] < target ) {
+			low = high + 1;
+			high += step;
+			step <<= 1;
+		}
+		high = Math.min( high, this.blockLastDocs.length );
+		while ( low < high ) {
+			int middle = ( low + high ) >>> 1;
+			if ( this.blockLastDocs[middle] < target ) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Cursor decoding one block at a time, using the skip entries to jump over
+	 * blocks that cannot contain the target of nextGEQ. The deleted documents
+	 * are removed from a block when it is decoded, so a block may be empty.
+	 */
+	private class BlockCursor implements PostingsCursor {
+
+		private final int[] docs = new int[PostingsCodec.BLOCK_SIZE];
+		private final int[] tfs = new int[PostingsCodec.BLOCK_SIZE];
+		private int block = -1;
+		private int shallowBlock = 0;
+		private int blockLength = 0;
+		private int position = 0;
+		private int doc = -1;
+
+		@Override
+		public int nextDoc() {
+			if ( this.doc == NO_MORE_DOCS ) {
+				return NO_MORE_DOCS;
+			}
+			if ( ++this.position >= this.blockLength ) {
+				do {
+					if ( this.block + 1 >= blockLastDocs.length ) {
+						return this.doc = NO_MORE_DOCS;
+					}
+					this.decodeBlock( this.block + 1 );
+				} while ( this.blockLength == 0 );
+			}
+			return this.doc = this.docs[this.position];
+		}
+
+		@Override
+		public int nextGEQ( int target ) {
+			if ( this.doc >= target ) {
+				return this.doc;
+			}
+			if ( this.blockLength == 0 || this.docs[this.blockLength - 1] < target ) {
+				int next = this.block + 1;
+				// without deleted documents, the block reached contains the target
+				do {
+					next = findBlock( next, target );
+					if ( next >= blockLastDocs.length ) {
+						this.position = this.blockLength;
+						return this.doc = NO_MORE_DOCS;
+					}
+					this.decodeBlock( next++ );
+				} while ( this.blockLength == 0 || this.docs[this.blockLength - 1] < target );
+			}
+			while ( this.docs[this.position] < target ) {
+				this.position++;
+			}
+			return this.doc = this.docs[this.position];
+		}
+
+		@Override
+		public int shallowAdvance( int target ) {
+			int next = findBlock( Math.max( this.shallowBlock, this.block ), target );
+			this.shallowBlock = next;
+			return next < blockLastDocs.length ? blockLastDocs[next] : NO_MORE_DOCS;
+		}
+
+		@Override
+		public int blockMaxTf() {
+			return this.shallowBlock < blockMaxTfs.length ? blockMaxTfs[this.shallowBlock] : 0;
+		}
+
+		@Override
+		public double blockMaxNormalizedTf() {
+			return this.shallowBlock < blockMaxNormalizedTfs.length ? blockMaxNormalizedTfs[this.shallowBlock] : 0;
+		}
+
+		@Override
+		public int blockMinLength() {
+			return this.shallowBlock < blockMinLengths.length ? blockMinLengths[this.shallowBlock] : Integer.MAX_VALUE;
+		}
+
+		@Override
+		public int docId() {
+			return this.doc;
+		}
+
+		@Override
+		public int tf() {
+			return this.doc < 0 || this.doc == NO_MORE_DOCS ? 0 : this.tfs[this.position];
+		}
+
+		private void decodeBlock( int b ) {
+			this.blockLength = Math.min( PostingsCodec.BLOCK_SIZE, docFrequency - b * PostingsCodec.BLOCK_SIZE );
+			codec.decodeBlock( data, blockOffsets[b], this.docs, this.tfs, this.blockLength );
+			int previous = b == 0 ? -1 : blockLastDocs[b - 1];
+			for ( int i = 0 ; i < this.blockLength ; i++ ) {
+				previous += this.docs[i] + 1;
+				this.docs[i] = previous;
+				this.tfs[i]++;
+			}
+			if ( liveDocs != null ) {
+				int live = 0;
+				for ( int i = 0 ; i < this.blockLength ; i++ ) {
+					if ( liveDocs.isLive( this.docs[i] ) ) {
+						this.docs[live] = this.docs[i];
+						this.tfs[live] = this.tfs[i];
+						live++;
+					}
+				}
+				this.blockLength = live;
+			}
+			this.block = b;
+			this.shallowBlock = Math.max( this.shallowBlock, b );
+			this.position = 0;
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package tp2.searchEngine.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Store of the contents of the documents, compressed with Deflate by blocks
+ * of consecutive documents. Only the first document and the position of each
+ * block are kept uncompressed, so the store costs a few bytes per block in
+ * the heap besides the compressed contents, which can be read from a mapped
+ * file. Getting a content inflates its block.
+ * Contents are appended in increasing order of document ID and can be read
+ * while the store is being filled.
+ */
+public class DocumentStore {
+
+	/**
+	 * Number of uncompressed bytes from which a block is compressed.
+	 */
+	private static final int BLOCK_SIZE = 1 << 12;
+
+	/**
+	 * Length written for a null content.
+	 */
+	private static final int NULL_CONTENT = -1;
+
+	/**
+	 * Compressed blocks.
+	 */
+	private ByteBuffer data;
+
+	/**
+	 * First document of each block.
+	 */
+	private int[] blockFirstDocs;
+
+	/**
+	 * Position of each block in data, with one more entry giving the end of the last block.
+	 */
+	private int[] blockOffsets;
+
+	private int nbBlocks;
+
+	/**
+	 * Number of documents.
+	 */
+	private int size;
+
+	/**
+	 * Uncompressed contents of the documents after the last block, null once
+	 * the store is read from a file.
+	 */
+	private ByteArrayOutputStream pending;
+
+	/**
+	 * ID of the first pending document.
+	 */
+	private int pendingFirstDoc;
+
+	/**
+	 * Creates an empty store.
+	 */
+	public DocumentStore() {
+		this.data = ByteBuffer.allocate( BLOCK_SIZE );
+		this.blockFirstDocs = new int[16];
+		this.blockOffsets = new int[17];
+		this.nbBlocks = 0;
+		this.size = 0;
+		this.pending = new ByteArrayOutputStream( BLOCK_SIZE + 1024 );
+		this.pendingFirstDoc = 0;
+	}
+
+	/**
+	 * Creates a store over compressed blocks read from a file.
+	 */
+	private DocumentStore( ByteBuffer data, int[] blockFirstDocs, int[] blockOffsets, int size ) {
+		this.data = data;
+		this.blockFirstDocs = blockFirstDocs;
+		this.blockOffsets = blockOffsets;
+		this.nbBlocks = blockFirstDocs.length;
+		this.size = size;
+		this.pending = null;
+		this.pendingFirstDoc = size;
+	}
+
+	/**
+	 * Appends the content of the next document.
+	 * @param content The content of the document, which may be null.
+	 * @return The ID of the document in the store.
+	 */
+	public synchronized int add( String content ) {
+		if ( this.pending == null ) {
+			throw new IllegalStateException( "Document store read from a file cannot be modified" );
+		}
+		writeContent( content, this.pending );
+		int doc = this.size++;
+		if ( this.pending.size() >= BLOCK_SIZE ) {
+			this.flush();
+		}
+		return doc;
+	}
+
+	/**
+	 * Returns the content of a document.
+	 * @param doc The ID of the document in the store.
+	 * @return The content of the document, which may be null.
+	 */
+	public String getContent( int doc ) {
+		byte[] block;
+		byte[] compressed = null;
+		int firstDoc;
+		synchronized ( this ) {
+			if ( doc < 0 || doc >= this.size ) {
+				throw new IndexOutOfBoundsException( "Document " + doc + " not in a store of " + this.size + " documents" );
+			}
+			if ( doc >= this.pendingFirstDoc ) {
+				block = this.pending.toByteArray();
+				firstDoc = this.pendingFirstDoc;
+			} else {
+				int b = Arrays.binarySearch( this.blockFirstDocs, 0, this.nbBlocks, doc );
+				b = b >= 0 ? b : -b - 2;
+				compressed = new byte[this.blockOffsets[b + 1] - this.blockOffsets[b]];
+				ByteBuffer blocks = this.data.duplicate();
+				blocks.position( this.blockOffsets[b] );
+				blocks.get( compressed );
+				block = null;
+				firstDoc = this.blockFirstDocs[b];
+			}
+		}
+		// blocks are never modified once compressed, they are inflated without the lock
+		if ( compressed != null ) {
+			block = inflate( compressed );
+		}
+		return readContent( block, doc - firstDoc );
+	}
+
+	/**
+	 * Tells if contents can be added to the store, which is not the case of
+	 * stores read from a file.
+	 * @return True if the store is read-only.
+	 */
+	public synchronized boolean isReadOnly() {
+		return this.pending == null;
+	}
+
+	/**
+	 * Returns the number of documents.
+	 * @return The number of documents in the store.
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of bytes of the compressed contents.
+	 * @return The size of the store in bytes.
+	 */
+	public synchronized long getSizeInBytes() {
+		return this.blockOffsets[this.nbBlocks] + ( this.pending == null ? 0 : this.pending.size() );
+	}
+
+	/**
+	 * Compresses the last documents and writes the store in the format read by {@link #read}.
+	 * @param out The stream to write into.
+	 * @throws IOException If the store cannot be written.
+	 */
+	public synchronized void write( DataOutputStream out ) throws IOException {
+		if ( this.pending != null && this.pending.size() > 0 ) {
+			this.flush();
+		}
+		out.writeInt( this.size );
+		out.writeInt( this.nbBlocks );
+		IndexSegment.writeInts( out, this.blockFirstDocs, this.nbBlocks );
+		IndexSegment.writeInts( out, this.blockOffsets, this.nbBlocks + 1 );
+		ByteBuffer blocks = this.data.duplicate();
+		blocks.position( 0 );
+		blocks.limit( this.blockOffsets[this.nbBlocks] );
+		if ( blocks.hasArray() ) {
+			out.write( blocks.array(), blocks.arrayOffset(), blocks.remaining() );
+		} else {
+			while ( blocks.hasRemaining() ) {
+				out.write( blocks.get() );
+			}
+		}
+	}
+
+	/**
+	 * Reads a store written by {@link #write}. The compressed blocks are read
+	 * in place from the buffer, which can be a mapped file.
+	 * @param in The buffer, positioned at the start of the store and moved after its end.
+	 * @return The document store, which cannot be modified.
+	 */
+	public static DocumentStore read( ByteBuffer in ) {
+		int size = in.getInt();
+		int nbBlocks = in.getInt();
+		int[] blockFirstDocs = IndexSegment.readInts( in, nbBlocks );
+		int[] blockOffsets = IndexSegment.readInts( in, nbBlocks + 1 );
+		ByteBuffer data = in.slice();
+		data.limit( blockOffsets[nbBlocks] );
+		in.position( in.position() + blockOffsets[nbBlocks] );
+		return new DocumentStore( data, blockFirstDocs, blockOffsets, size );
+	}
+
+	// compresses the pending documents as a new block
+	private void flush() {
+		if ( this.nbBlocks + 1 == this.blockFirstDocs.length ) {
+			this.blockFirstDocs = Arrays.copyOf( this.blockFirstDocs, this.blockFirstDocs.length * 2 );
+			this.blockOffsets = Arrays.copyOf( this.blockOffsets, this.blockOffsets.length * 2 );
+		}
+		Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+		try {
+			deflater.setInput( this.pending.toByteArray() );
+			deflater.finish();
+			byte[] buffer = new byte[4096];
+			while ( !deflater.finished() ) {
+				int length = deflater.deflate( buffer );
+				if ( this.data.remaining() < length ) {
+					ByteBuffer grown = ByteBuffer.allocate( Math.max( this.data.capacity() * 2, this.data.position() + length ) );
+					this.data.flip();
+					grown.put( this.data );
+					this.data = grown;
+				}
+				this.data.put( buffer, 0, length );
+			}
+		} finally {
+			deflater.end();
+		}
+		this.blockFirstDocs[this.nbBlocks] = this.pendingFirstDoc;
+		this.blockOffsets[++this.nbBlocks] = this.data.position();
+		this.pending.reset();
+		this.pendingFirstDoc = this.size;
+	}
+
+	private static byte[] inflate( byte[] compressed ) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput( compressed );
+			ByteArrayOutputStream block = new ByteArrayOutputStream( BLOCK_SIZE + 1024 );
+			byte[] buffer = new byte[4096];
+			while ( !inflater.finished() ) {
+				int length = inflater.inflate( buffer );
+				if ( length == 0 && inflater.needsInput() ) {
+					throw new IllegalStateException( "Truncated block in document store" );
+				}
+				block.write( buffer, 0, length );
+			}
+			return block.toByteArray();
+		} catch ( DataFormatException e ) {
+			throw new IllegalStateException( "Corrupted block in document store", e );
+		} finally {
+			inflater.end();
+		}
+	}
+
+	// content as its UTF-8 length followed by its UTF-8 bytes
+	private static void writeContent( String content, ByteArrayOutputStream out ) {
+		byte[] bytes = content == null ? null : content.getBytes( StandardCharsets.UTF_8 );
+		int length = bytes == null ? NULL_CONTENT : bytes.length;
+		out.write( length >>> 24 );
+		out.write( length >>> 16 );
+		out.write( length >>> 8 );
+		out.write( length );
+		if ( bytes != null ) {
+			out.write( bytes, 0, bytes.length );
+		}
+	}
+
+	// i-th content of an uncompressed block
+	private static String readContent( byte[] block, int i ) {
+		int position = 0;
+		for ( ; i > 0 ; i-- ) {
+			position += 4 + Math.max( 0, readInt( block, position ) );
+		}
+		int length = readInt( block, position );
+		return length == NULL_CONTENT ? null : new String( block, position + 4, length, StandardCharsets.UTF_8 );
+	}
+
+	private static int readInt( byte[] block, int position ) {
+		return ( block[position] & 0xFF ) << 24 | ( block[position + 1] & 0xFF ) << 16
+				| ( block[position + 2] & 0xFF ) << 8 | ( block[position + 3] & 0xFF );
+	}
+}
@@ -0,0 +1,302 @@
+package tp2.searchEngine.index;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Forward index: the term vector of each document, stored in compressed
+ * sparse row layout. The distinct term IDs of all the documents and their
+ * frequencies are concatenated in two flat arrays, in document order and in
+ * increasing order of term ID within a document, and an offsets array gives
+ * where each document starts. Finding a document is an array access, and the
+ * terms it shares with a query are found by merging two sorted lists.
+ * Documents are appended in increasing order of document ID.
+ */
+public class ForwardIndex {
+
+	/**
+	 * Initial capacity of the term arrays.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Start of each document in the term arrays, with one more entry giving
+	 * the end of the last document.
+	 */
+	private int[] offsets;
+
+	/**
+	 * Term IDs of the documents.
+	 */
+	private int[] termIds;
+
+	/**
+	 * Frequencies of the terms, parallel to termIds.
+	 */
+	private int[] tfs;
+
+	/**
+	 * Number of documents.
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty forward index.
+	 */
+	public ForwardIndex() {
+		this.offsets = new int[INITIAL_CAPACITY + 1];
+		this.termIds = new int[INITIAL_CAPACITY];
+		this.tfs = new int[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Creates a forward index over existing arrays, which are not copied.
+	 */
+	private ForwardIndex( int[] offsets, int[] termIds, int[] tfs ) {
+		this.offsets = offsets;
+		this.termIds = termIds;
+		this.tfs = tfs;
+		this.size = offsets.length - 1;
+	}
+
+	/**
+	 * Writes the index in the format read by {@link #read}.
+	 * @param out The stream to write into.
+	 * @throws IOException If the index cannot be written.
+	 */
+	public void write( DataOutputStream out ) throws IOException {
+		out.writeInt( this.size );
+		out.writeInt( this.offsets[this.size] );
+		IndexSegment.writeInts( out, this.offsets, this.size + 1 );
+		IndexSegment.writeInts( out, this.termIds, this.offsets[this.size] );
+		IndexSegment.writeInts( out, this.tfs, this.offsets[this.size] );
+	}
+
+	/**
+	 * Reads an index written by {@link #write}.
+	 * @param in The buffer, positioned at the start of the index and moved after its end.
+	 * @return The forward index.
+	 */
+	public static ForwardIndex read( ByteBuffer in ) {
+		int size = in.getInt();
+		int nbTerms = in.getInt();
+		int[] offsets = IndexSegment.readInts( in, size + 1 );
+		int[] termIds = IndexSegment.readInts( in, nbTerms );
+		int[] tfs = IndexSegment.readInts( in, nbTerms );
+		return new ForwardIndex( offsets, termIds, tfs );
+	}
+
+	/**
+	 * Appends the next document.
+	 * @param frequencies The counted term frequencies of the document.
+	 */
+	public void add( TermFrequencies frequencies ) {
+		frequencies.count();
+		int start = this.offsets[this.size];
+		this.grow( 1, frequencies.size() );
+		for ( int i = 0 ; i < frequencies.size() ; i++ ) {
+			this.termIds[start + i] = frequencies.getTermId( i );
+			this.tfs[start + i] = frequencies.getTf( i );
+		}
+		this.offsets[++this.size] = start + frequencies.size();
+	}
+
+	/**
+	 * Appends all the documents of another forward index using the same dictionary.
+	 * @param other The index whose documents are appended.
+	 */
+	public void addAll( ForwardIndex other ) {
+		int nbTerms = other.offsets[other.size];
+		this.grow( other.size, nbTerms );
+		int start = this.offsets[this.size];
+		System.arraycopy( other.termIds, 0, this.termIds, start, nbTerms );
+		System.arraycopy( other.tfs, 0, this.tfs, start, nbTerms );
+		for ( int doc = 1 ; doc <= other.size ; doc++ ) {
+			this.offsets[this.size + doc] = start + other.offsets[doc];
+		}
+		this.size += other.size;
+	}
+
+	/**
+	 * Appends all the documents of another forward index, translating their
+	 * term IDs to the dictionary of this index.
+	 * @param other The index whose documents are appended.
+	 * @param newIds The ID in this index of each term ID of the other index.
+	 */
+	public void addAll( ForwardIndex other, int[] newIds ) {
+		this.grow( other.size, other.offsets[other.size] );
+		long[] entries = new long[INITIAL_CAPACITY];
+		for ( int doc = 0 ; doc < other.size ; doc++ ) {
+			int otherStart = other.offsets[doc];
+			int length = other.offsets[doc + 1] - otherStart;
+			if ( entries.length < length ) {
+				entries = new long[Math.max( length, entries.length * 2 )];
+			}
+			// the translation changes the order of the terms, sort them again
+			for ( int i = 0 ; i < length ; i++ ) {
+				entries[i] = ( (long) newIds[other.termIds[otherStart + i]] << 32 ) | other.tfs[otherStart + i];
+			}
+			Arrays.sort( entries, 0, length );
+
+			int start = this.offsets[this.size];
+			for ( int i = 0 ; i < length ; i++ ) {
+				this.termIds[start + i] = (int) ( entries[i] >>> 32 );
+				this.tfs[start + i] = (int) entries[i];
+			}
+			this.offsets[++this.size] = start + length;
+		}
+	}
+
+	/**
+	 * Copies some of the documents into a new forward index.
+	 * @param docs The IDs of the documents to copy, in increasing order.
+	 * @return The index of the documents, the i-th one having ID i.
+	 */
+	public ForwardIndex select( int[] docs ) {
+		int[] offsets = new int[docs.length + 1];
+		for ( int i = 0 ; i < docs.length ; i++ ) {
+			offsets[i + 1] = offsets[i] + this.getLength( docs[i] );
+		}
+		int[] termIds = new int[offsets[docs.length]];
+		int[] tfs = new int[offsets[docs.length]];
+		for ( int i = 0 ; i < docs.length ; i++ ) {
+			int start = this.offsets[docs[i]];
+			System.arraycopy( this.termIds, start, termIds, offsets[i], offsets[i + 1] - offsets[i] );
+			System.arraycopy( this.tfs, start, tfs, offsets[i], offsets[i + 1] - offsets[i] );
+		}
+		return new ForwardIndex( offsets, termIds, tfs );
+	}
+
+	/**
+	 * Releases the unused capacity of the arrays, once all the documents are added.
+	 */
+	public void trimToSize() {
+		this.offsets = Arrays.copyOf( this.offsets, this.size + 1 );
+		this.termIds = Arrays.copyOf( this.termIds, this.offsets[this.size] );
+		this.tfs = Arrays.copyOf( this.tfs, this.offsets[this.size] );
+	}
+
+	/**
+	 * Returns the number of documents.
+	 * @return The number of documents in the index.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of distinct terms of a document.
+	 * @param doc The ID of the document.
+	 * @return The number of distinct terms of the document.
+	 */
+	public int getLength( int doc ) {
+		return this.offsets[doc + 1] - this.offsets[doc];
+	}
+
+	/**
+	 * Returns the position of the first term of a document, to read its terms
+	 * with getTermIdAt and getTfAt up to getEnd( doc ) without copying them.
+	 * @param doc The ID of the document.
+	 * @return The position of the first term of the document.
+	 */
+	public int getStart( int doc ) {
+		return this.offsets[doc];
+	}
+
+	/**
+	 * Returns the position following the last term of a document.
+	 * @param doc The ID of the document.
+	 * @return The end position of the terms of the document.
+	 */
+	public int getEnd( int doc ) {
+		return this.offsets[doc + 1];
+	}
+
+	/**
+	 * Returns the term ID stored at a position.
+	 * @param position A position between getStart( doc ) and getEnd( doc ) - 1.
+	 * @return The ID of the term.
+	 */
+	public int getTermIdAt( int position ) {
+		return this.termIds[position];
+	}
+
+	/**
+	 * Returns the term frequency stored at a position.
+	 * @param position A position between getStart( doc ) and getEnd( doc ) - 1.
+	 * @return The frequency of the term in its document.
+	 */
+	public int getTfAt( int position ) {
+		return this.tfs[position];
+	}
+
+	/**
+	 * Returns a copy of the term vector of a document.
+	 * @param doc The ID of the document.
+	 * @return The terms of the document with their frequencies.
+	 */
+	public TermVector getTermVector( int doc ) {
+		return new TermVector( Arrays.copyOfRange( this.termIds, this.offsets[doc], this.offsets[doc + 1] ),
+				Arrays.copyOfRange( this.tfs, this.offsets[doc], this.offsets[doc + 1] ) );
+	}
+
+	/**
+	 * Returns the frequency of a term in a document.
+	 * @param doc The ID of the document.
+	 * @param termId The ID of the term.
+	 * @return The number of occurrences of the term in the document.
+	 */
+	public int frequency( int doc, int termId ) {
+		int i = Arrays.binarySearch( this.termIds, this.offsets[doc], this.offsets[doc + 1], termId );
+		return i < 0 ? 0 : this.tfs[i];
+	}
+
+	/**
+	 * Finds the terms of a document among the given terms.
+	 * @param doc The ID of the document.
+	 * @param termIds The IDs of the terms to look for, in increasing order.
+	 * @param tfs Receives the frequency in the document of each term, 0 for the absent ones.
+	 * @return The number of given terms found in the document.
+	 */
+	public int intersect( int doc, int[] termIds, int[] tfs ) {
+		int position = this.offsets[doc];
+		int end = this.offsets[doc + 1];
+		int common = 0;
+		for ( int i = 0 ; i < termIds.length ; i++ ) {
+			while ( position < end && this.termIds[position] < termIds[i] ) {
+				position++;
+			}
+			if ( position < end && this.termIds[position] == termIds[i] ) {
+				tfs[i] = this.tfs[position];
+				common++;
+			} else {
+				tfs[i] = 0;
+			}
+		}
+		return common;
+	}
+
+	/**
+	 * Returns the approximate memory used by the arrays of the index.
+	 * @return The size of the index in bytes.
+	 */
+	public long getSizeInBytes() {
+		return 4L * ( this.offsets.length + this.termIds.length + this.tfs.length );
+	}
+
+	// makes room for documents and terms
+	private void grow( int documents, int terms ) {
+		if ( this.size + documents + 1 > this.offsets.length ) {
+			this.offsets = Arrays.copyOf( this.offsets, Math.max( this.size + documents + 1, this.offsets.length * 2 ) );
+		}
+		int needed = this.offsets[this.size] + terms;
+		if ( needed > this.termIds.length ) {
+			int capacity = Math.max( needed, this.termIds.length * 2 );
+			this.termIds = Arrays.copyOf( this.termIds, capacity );
+			this.tfs = Arrays.copyOf( this.tfs, capacity );
+		}
+	}
+}
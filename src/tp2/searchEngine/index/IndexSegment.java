@@ -0,0 +1,247 @@
+package tp2.searchEngine.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Complete index of a set of documents: term dictionary, compressed postings,
+ * forward index, lengths and norms of the documents, the ID each document
+ * has in the collection and the store of their contents. A segment is written
+ * to a single binary file and reopened by mapping the file in memory: the
+ * dictionary, the forward index and the per-document tables are copied into
+ * the heap, while the encoded postings blocks and the compressed contents are
+ * read in place from the mapped file, so they stay in the page cache and
+ * reopening a segment does not read them.
+ *
+ * The file starts with a magic number and a format version, followed by the
+ * sections in this order, all numbers being big-endian:
+ * - number of documents, document IDs, lengths and norms,
+ * - dictionary (see TermDictionary.write),
+ * - forward index (see ForwardIndex.write),
+ * - contents of the documents (see DocumentStore.write),
+ * - postings of each term by term ID (see CompressedPostings.write).
+ */
+public class IndexSegment {
+
+	/**
+	 * Magic number starting the segment files, "TP2I".
+	 */
+	public static final int MAGIC = 0x54503249;
+
+	/**
+	 * Version of the file format, increased at each incompatible change.
+	 */
+	public static final int VERSION = 2;
+
+	/**
+	 * ID of each document in the collection, by document ID in the segment.
+	 */
+	private final int[] docIds;
+
+	private final TermDictionary dictionary;
+
+	private final CompressedPostings[] postings;
+
+	private final ForwardIndex forwardIndex;
+
+	private final int[] docLengths;
+
+	private final double[] docNorms;
+
+	private final DocumentStore documentStore;
+
+	/**
+	 * Creates a segment over already built index structures.
+	 * @param docIds The ID in the collection of each document of the segment.
+	 * @param dictionary The dictionary of the terms of the segment.
+	 * @param postings The postings of each term by term ID.
+	 * @param forwardIndex The term vectors of the documents.
+	 * @param docLengths The number of distinct terms of each document.
+	 * @param docNorms The norm of each document vector.
+	 * @param documentStore The contents of the documents.
+	 */
+	public IndexSegment( int[] docIds, TermDictionary dictionary, CompressedPostings[] postings,
+			ForwardIndex forwardIndex, int[] docLengths, double[] docNorms, DocumentStore documentStore ) {
+		this.docIds = docIds;
+		this.dictionary = dictionary;
+		this.postings = postings;
+		this.forwardIndex = forwardIndex;
+		this.docLengths = docLengths;
+		this.docNorms = docNorms;
+		this.documentStore = documentStore;
+	}
+
+	/**
+	 * Writes the segment to a file, replacing it if it exists. The segment is
+	 * written to a temporary file first, so an interrupted write does not
+	 * leave a truncated segment.
+	 * @param path The path of the segment file.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void save( Path path ) throws IOException {
+		Path temporary = path.resolveSibling( path.getFileName() + ".tmp" );
+		try ( DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream( Files.newOutputStream( temporary ), 1 << 16 ) ) ) {
+			out.writeInt( MAGIC );
+			out.writeInt( VERSION );
+			out.writeInt( this.docIds.length );
+			writeInts( out, this.docIds, this.docIds.length );
+			writeInts( out, this.docLengths, this.docLengths.length );
+			writeDoubles( out, this.docNorms, this.docNorms.length );
+			this.dictionary.write( out );
+			this.forwardIndex.write( out );
+			this.documentStore.write( out );
+			for ( CompressedPostings termPostings : this.postings ) {
+				termPostings.write( out );
+			}
+		}
+		Files.move( temporary, path, StandardCopyOption.REPLACE_EXISTING );
+	}
+
+	/**
+	 * Opens a segment written by {@link #save}.
+	 * @param path The path of the segment file.
+	 * @return The segment, its postings reading the mapped file.
+	 * @throws IOException If the file cannot be read or is not a segment of this version.
+	 */
+	public static IndexSegment open( Path path ) throws IOException {
+		MappedByteBuffer in;
+		try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) ) {
+			if ( channel.size() > Integer.MAX_VALUE ) {
+				throw new IOException( path + " is larger than 2 GB" );
+			}
+			// the mapping stays valid once the channel is closed
+			in = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+		}
+		if ( in.remaining() < 8 || in.getInt() != MAGIC ) {
+			throw new IOException( path + " is not an index segment" );
+		}
+		int version = in.getInt();
+		if ( version != VERSION ) {
+			throw new IOException( path + " has format version " + version + ", expected " + VERSION );
+		}
+
+		int nbDocuments = in.getInt();
+		int[] docIds = readInts( in, nbDocuments );
+		int[] docLengths = readInts( in, nbDocuments );
+		double[] docNorms = readDoubles( in, nbDocuments );
+		TermDictionary dictionary = TermDictionary.read( in );
+		ForwardIndex forwardIndex = ForwardIndex.read( in );
+		DocumentStore documentStore = DocumentStore.read( in );
+		CompressedPostings[] postings = new CompressedPostings[dictionary.size()];
+		for ( int termId = 0 ; termId < postings.length ; termId++ ) {
+			postings[termId] = CompressedPostings.read( termId, in );
+		}
+		return new IndexSegment( docIds, dictionary, postings, forwardIndex, docLengths, docNorms, documentStore );
+	}
+
+	/**
+	 * Returns the number of documents of the segment.
+	 * @return The number of documents.
+	 */
+	public int size() {
+		return this.docIds.length;
+	}
+
+	/**
+	 * Returns the ID in the collection of each document of the segment.
+	 * @return The document IDs, by document ID in the segment.
+	 */
+	public int[] getDocIds() {
+		return this.docIds;
+	}
+
+	/**
+	 * Returns the dictionary of the terms of the segment.
+	 * @return The term dictionary.
+	 */
+	public TermDictionary getDictionary() {
+		return this.dictionary;
+	}
+
+	/**
+	 * Returns the compressed postings by term ID.
+	 * @return The inverted index.
+	 */
+	public CompressedPostings[] getPostings() {
+		return this.postings;
+	}
+
+	/**
+	 * Returns the term vectors of the documents.
+	 * @return The forward index.
+	 */
+	public ForwardIndex getForwardIndex() {
+		return this.forwardIndex;
+	}
+
+	/**
+	 * Returns the number of distinct terms of each document.
+	 * @return The document lengths.
+	 */
+	public int[] getDocLengths() {
+		return this.docLengths;
+	}
+
+	/**
+	 * Returns the norm of each document vector.
+	 * @return The document norms.
+	 */
+	public double[] getDocNorms() {
+		return this.docNorms;
+	}
+
+	/**
+	 * Returns the contents of the documents, by document ID in the segment.
+	 * @return The document store.
+	 */
+	public DocumentStore getDocumentStore() {
+		return this.documentStore;
+	}
+
+	/**
+	 * Writes the first values of an int array.
+	 */
+	static void writeInts( DataOutputStream out, int[] values, int length ) throws IOException {
+		for ( int i = 0 ; i < length ; i++ ) {
+			out.writeInt( values[i] );
+		}
+	}
+
+	/**
+	 * Writes the first values of a double array.
+	 */
+	static void writeDoubles( DataOutputStream out, double[] values, int length ) throws IOException {
+		for ( int i = 0 ; i < length ; i++ ) {
+			out.writeDouble( values[i] );
+		}
+	}
+
+	/**
+	 * Reads an int array and moves the buffer after it.
+	 */
+	static int[] readInts( ByteBuffer in, int length ) {
+		int[] values = new int[length];
+		in.asIntBuffer().get( values );
+		in.position( in.position() + 4 * length );
+		return values;
+	}
+
+	/**
+	 * Reads a double array and moves the buffer after it.
+	 */
+	static double[] readDoubles( ByteBuffer in, int length ) {
+		double[] values = new double[length];
+		in.asDoubleBuffer().get( values );
+		in.position( in.position() + 8 * length );
+		return values;
+	}
+}
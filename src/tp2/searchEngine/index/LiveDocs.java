@@ -0,0 +1,79 @@
+package tp2.searchEngine.index;
+
+import java.util.Arrays;
+
+/**
+ * Bitset of the documents of a segment that are not deleted. A deleted
+ * document keeps its ID, its postings being skipped by the cursors until the
+ * segment is merged.
+ */
+public class LiveDocs {
+
+	/**
+	 * One bit per document, set while the document is live.
+	 */
+	private final long[] bits;
+
+	/**
+	 * Number of documents.
+	 */
+	private final int size;
+
+	/**
+	 * Number of deleted documents.
+	 */
+	private int nbDeleted;
+
+	/**
+	 * Creates the bitset of a segment whose documents are all live.
+	 * @param size The number of documents of the segment.
+	 */
+	public LiveDocs( int size ) {
+		this.bits = new long[( size + 63 ) >>> 6];
+		Arrays.fill( this.bits, -1L );
+		if ( ( size & 63 ) != 0 ) {
+			this.bits[this.bits.length - 1] = ( 1L << size ) - 1;
+		}
+		this.size = size;
+		this.nbDeleted = 0;
+	}
+
+	/**
+	 * Tells if a document is live.
+	 * @param doc The ID of the document in the segment.
+	 * @return True if the document is not deleted.
+	 */
+	public boolean isLive( int doc ) {
+		return ( this.bits[doc >>> 6] & ( 1L << doc ) ) != 0;
+	}
+
+	/**
+	 * Deletes a document.
+	 * @param doc The ID of the document in the segment.
+	 * @return True if the document was live, false if it was already deleted.
+	 */
+	public boolean delete( int doc ) {
+		if ( !this.isLive( doc ) ) {
+			return false;
+		}
+		this.bits[doc >>> 6] &= ~( 1L << doc );
+		this.nbDeleted++;
+		return true;
+	}
+
+	/**
+	 * Returns the number of documents.
+	 * @return The number of documents of the segment, live or deleted.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of deleted documents.
+	 * @return The number of deleted documents of the segment.
+	 */
+	public int getNbDeleted() {
+		return this.nbDeleted;
+	}
+}
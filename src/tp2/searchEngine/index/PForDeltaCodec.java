@@ -0,0 +1,118 @@
+package tp2.searchEngine.index;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Patched frame-of-reference (PForDelta) postings codec. The gaps and the
+ * frequencies of a block are each bit-packed on a fixed width chosen so that
+ * most values fit; the high bits of the few values that do not fit are stored
+ * afterwards as exceptions. Fixed-width unpacking has no data-dependent branch,
+ * which keeps decoding fast.
+ */
+public class PForDeltaCodec implements PostingsCodec {
+
+	/**
+	 * Minimum fraction of the values of a block that must fit in the chosen bit width.
+	 */
+	private static final double FIT_RATIO = 0.9;
+
+	@Override
+	public void encodeBlock( int[] docGaps, int[] tfs, int length, ByteArrayOutputStream out ) {
+		encode( docGaps, length, out );
+		encode( tfs, length, out );
+	}
+
+	@Override
+	public int decodeBlock( ByteBuffer in, int offset, int[] docGaps, int[] tfs, int length ) {
+		offset = decode( in, offset, docGaps, length );
+		return decode( in, offset, tfs, length );
+	}
+
+	@Override
+	public int getId() {
+		return 1;
+	}
+
+	// layout: bit width, exception count, packed low bits, (position, high bits) of exceptions
+	private static void encode( int[] values, int length, ByteArrayOutputStream out ) {
+		int bits = chooseBitWidth( values, length );
+		int exceptions = 0;
+		for ( int i = 0 ; i < length ; i++ ) {
+			if ( ( values[i] >>> bits ) != 0 ) {
+				exceptions++;
+			}
+		}
+		out.write( bits );
+		out.write( exceptions );
+
+		long buffer = 0;
+		int buffered = 0;
+		long mask = ( 1L << bits ) - 1;
+		for ( int i = 0 ; i < length ; i++ ) {
+			buffer |= ( values[i] & mask ) << buffered;
+			buffered += bits;
+			while ( buffered >= 8 ) {
+				out.write( (int) ( buffer & 0xFF ) );
+				buffer >>>= 8;
+				buffered -= 8;
+			}
+		}
+		if ( buffered > 0 ) {
+			out.write( (int) ( buffer & 0xFF ) );
+		}
+
+		for ( int i = 0 ; i < length ; i++ ) {
+			if ( ( values[i] >>> bits ) != 0 ) {
+				out.write( i );
+				VByteCodec.writeVInt( values[i] >>> bits, out );
+			}
+		}
+	}
+
+	private static int decode( ByteBuffer in, int offset, int[] values, int length ) {
+		int bits = in.get( offset++ );
+		int exceptions = in.get( offset++ ) & 0xFF;
+
+		long buffer = 0;
+		int buffered = 0;
+		int mask = (int) ( ( 1L << bits ) - 1 );
+		for ( int i = 0 ; i < length ; i++ ) {
+			while ( buffered < bits ) {
+				buffer |= ( in.get( offset++ ) & 0xFFL ) << buffered;
+				buffered += 8;
+			}
+			values[i] = (int) buffer & mask;
+			buffer >>>= bits;
+			buffered -= bits;
+		}
+
+		for ( int e = 0 ; e < exceptions ; e++ ) {
+			int position = in.get( offset++ ) & 0xFF;
+			int b = in.get( offset++ );
+			int high = b & 0x7F;
+			for ( int shift = 7 ; b < 0 ; shift += 7 ) {
+				b = in.get( offset++ );
+				high |= ( b & 0x7F ) << shift;
+			}
+			values[position] |= high << bits;
+		}
+		return offset;
+	}
+
+	// smallest width such that FIT_RATIO of the values fit
+	private static int chooseBitWidth( int[] values, int length ) {
+		int[] histogram = new int[33];
+		for ( int i = 0 ; i < length ; i++ ) {
+			histogram[32 - Integer.numberOfLeadingZeros( values[i] )]++;
+		}
+		int fitting = 0;
+		for ( int bits = 0 ; bits < 32 ; bits++ ) {
+			fitting += histogram[bits];
+			if ( fitting >= FIT_RATIO * length ) {
+				return bits;
+			}
+		}
+		return 31;
+	}
+}
@@ -0,0 +1,44 @@
+package tp2.searchEngine.index;
+
+/**
+ * Postings of a term as seen by the query evaluators: the statistics bounding
+ * the scores of the term and cursors over its postings.
+ */
+public interface Postings {
+
+	/**
+	 * Returns the dense ID of the term, used to look up per-term tables.
+	 * @return The ID of the term of the list.
+	 */
+	int getTermId();
+
+	/**
+	 * Returns the number of postings, i.e. the document frequency of the term.
+	 * @return The number of postings in the list.
+	 */
+	int size();
+
+	/**
+	 * Returns the highest term frequency of the list.
+	 * @return The highest term frequency, 0 if the list is empty.
+	 */
+	int getMaxTf();
+
+	/**
+	 * Returns the highest term frequency divided by the document norm of the list.
+	 * @return The highest normalized term frequency, 0 if the list is empty.
+	 */
+	double getMaxNormalizedTf();
+
+	/**
+	 * Returns the smallest length of the documents of the list.
+	 * @return The smallest document length, Integer.MAX_VALUE if the list is empty.
+	 */
+	int getMinLength();
+
+	/**
+	 * Returns a new cursor over the postings.
+	 * @return A cursor positioned before the first posting.
+	 */
+	PostingsCursor cursor();
+}
@@ -0,0 +1,70 @@
+package tp2.searchEngine.index;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Codec compressing blocks of postings. A block holds at most
+ * {@link #BLOCK_SIZE} postings, given as document ID gaps minus one and
+ * term frequencies minus one, so that all encoded values are non-negative
+ * and small.
+ */
+public interface PostingsCodec {
+
+	/**
+	 * Maximum number of postings per block.
+	 */
+	int BLOCK_SIZE = 128;
+
+	/**
+	 * Variable-byte codec, one value after the other.
+	 */
+	PostingsCodec VBYTE = new VByteCodec();
+
+	/**
+	 * Patched frame-of-reference codec, fixed bit width per block with exceptions.
+	 */
+	PostingsCodec PFOR_DELTA = new PForDeltaCodec();
+
+	/**
+	 * Encodes a block of postings.
+	 * @param docGaps The document ID gaps minus one.
+	 * @param tfs The term frequencies minus one.
+	 * @param length The number of postings in the block.
+	 * @param out The stream to write the encoded block into.
+	 */
+	void encodeBlock( int[] docGaps, int[] tfs, int length, ByteArrayOutputStream out );
+
+	/**
+	 * Decodes a block of postings.
+	 * @param in The buffer containing the encoded block.
+	 * @param offset The position of the block in the buffer.
+	 * @param docGaps Array receiving the document ID gaps minus one.
+	 * @param tfs Array receiving the term frequencies minus one.
+	 * @param length The number of postings in the block.
+	 * @return The position following the block in the buffer.
+	 */
+	int decodeBlock( ByteBuffer in, int offset, int[] docGaps, int[] tfs, int length );
+
+	/**
+	 * Returns the ID of the codec, as written in the index files.
+	 * @return The ID of the codec.
+	 */
+	int getId();
+
+	/**
+	 * Returns the codec of an ID read from an index file.
+	 * @param id The ID of the codec.
+	 * @return The codec with this ID.
+	 * @throws IllegalArgumentException If no codec has this ID.
+	 */
+	static PostingsCodec forId( int id ) {
+		if ( id == VBYTE.getId() ) {
+			return VBYTE;
+		}
+		if ( id == PFOR_DELTA.getId() ) {
+			return PFOR_DELTA;
+		}
+		throw new IllegalArgumentException( "Unknown postings codec " + id );
+	}
+}
@@ -0,0 +1,69 @@
+package tp2.searchEngine.index;
+
+/**
+ * Iterator over the postings of a term, in increasing order of document ID.
+ * A cursor is positioned before the first posting when created.
+ */
+public interface PostingsCursor {
+
+	/**
+	 * Document ID returned once the postings are exhausted.
+	 */
+	int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+	/**
+	 * Moves to the next posting.
+	 * @return The document ID of the next posting, or NO_MORE_DOCS.
+	 */
+	int nextDoc();
+
+	/**
+	 * Moves to the first posting whose document ID is greater than or equal to
+	 * the target, skipping whole blocks when possible. Does not move if the
+	 * current document ID already satisfies the condition.
+	 * @param target The document ID to reach.
+	 * @return The document ID of the new current posting, or NO_MORE_DOCS.
+	 */
+	int nextGEQ( int target );
+
+	/**
+	 * Moves the block metadata, but not the cursor itself, to the block that
+	 * may contain the target. The block metadata is never moved backwards.
+	 * @param target The document ID to reach.
+	 * @return The last document ID of the block, or NO_MORE_DOCS if no block remains.
+	 */
+	int shallowAdvance( int target );
+
+	/**
+	 * Returns the highest term frequency of the block reached by the cursor or by shallowAdvance.
+	 * @return The highest term frequency of the block.
+	 */
+	int blockMaxTf();
+
+	/**
+	 * Returns the highest term frequency divided by the document norm in the
+	 * block reached by the cursor or by shallowAdvance.
+	 * @return The highest normalized term frequency of the block.
+	 */
+	double blockMaxNormalizedTf();
+
+	/**
+	 * Returns the smallest document length (number of distinct terms) of the
+	 * block reached by the cursor or by shallowAdvance.
+	 * @return The smallest document length of the block.
+	 */
+	int blockMinLength();
+
+	/**
+	 * Returns the document ID of the current posting.
+	 * @return The current document ID, -1 before the first call to nextDoc, NO_MORE_DOCS at the end.
+	 */
+	int docId();
+
+	/**
+	 * Returns the term frequency of the current posting.
+	 * @return The frequency of the term in the current document, 0 before the
+	 * first call to nextDoc and at the end.
+	 */
+	int tf();
+}
@@ -0,0 +1,101 @@
+package tp2.searchEngine.index;
+
+import java.util.Arrays;
+
+/**
+ * Postings list of a single term: the documents containing the term along
+ * with the frequency of the term in each of them. Postings are stored as two
+ * parallel primitive arrays, in increasing order of document ID.
+ */
+public class PostingsList {
+
+	/**
+	 * Initial capacity of the postings arrays.
+	 */
+	private static final int INITIAL_CAPACITY = 4;
+
+	/**
+	 * Document IDs of the postings.
+	 */
+	private int[] docIds;
+
+	/**
+	 * Term frequencies of the postings.
+	 */
+	private int[] tfs;
+
+	/**
+	 * Number of postings in the list.
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty postings list.
+	 */
+	public PostingsList() {
+		this.docIds = new int[INITIAL_CAPACITY];
+		this.tfs = new int[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Appends a posting to the list. Document IDs must be added in increasing order.
+	 * @param docId The ID of the document containing the term.
+	 * @param tf The frequency of the term in the document.
+	 */
+	public void add( int docId, int tf ) {
+		if ( this.size == this.docIds.length ) {
+			this.grow( this.size + 1 );
+		}
+		this.docIds[this.size] = docId;
+		this.tfs[this.size] = tf;
+		this.size++;
+	}
+
+	/**
+	 * Appends all the postings of another list. Its document IDs must all be
+	 * greater than the ones of this list.
+	 * @param other The list whose postings are appended.
+	 */
+	public void addAll( PostingsList other ) {
+		if ( this.size + other.size > this.docIds.length ) {
+			this.grow( this.size + other.size );
+		}
+		System.arraycopy( other.docIds, 0, this.docIds, this.size, other.size );
+		System.arraycopy( other.tfs, 0, this.tfs, this.size, other.size );
+		this.size += other.size;
+	}
+
+	// grows the arrays by half their size, or more if needed
+	private void grow( int minCapacity ) {
+		int capacity = Math.max( minCapacity, this.docIds.length + ( this.docIds.length >> 1 ) );
+		this.docIds = Arrays.copyOf( this.docIds, capacity );
+		this.tfs = Arrays.copyOf( this.tfs, capacity );
+	}
+
+	/**
+	 * Returns the number of postings, i.e. the document frequency of the term.
+	 * @return The number of postings in the list.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the document ID of a posting.
+	 * @param i The position of the posting in the list.
+	 * @return The document ID of the i-th posting.
+	 */
+	public int getDocId( int i ) {
+		return this.docIds[i];
+	}
+
+	/**
+	 * Returns the term frequency of a posting.
+	 * @param i The position of the posting in the list.
+	 * @return The term frequency of the i-th posting.
+	 */
+	public int getTf( int i ) {
+		return this.tfs[i];
+	}
+}
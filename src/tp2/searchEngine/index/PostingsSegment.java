@@ -0,0 +1,221 @@
+package tp2.searchEngine.index;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Inverted index of a range of consecutive documents, added to the index
+ * together. Term IDs are the ones of the dictionary shared by all the
+ * segments, and document IDs are relative to the first document of the
+ * segment. The postings of a segment are immutable: deleting a document only
+ * clears its bit in the live documents of the segment, and the cursors skip
+ * its postings until the merge of the segment drops them.
+ */
+public class PostingsSegment {
+
+	/**
+	 * ID of the first document of the segment in the index.
+	 */
+	private final int docBase;
+
+	/**
+	 * Number of documents of the segment.
+	 */
+	private final int size;
+
+	/**
+	 * Postings of each term by term ID, null for the terms not in the segment.
+	 */
+	private final CompressedPostings[] postings;
+
+	/**
+	 * Documents of the segment not deleted.
+	 */
+	private final LiveDocs liveDocs;
+
+	/**
+	 * Number of deleted documents whose postings were already dropped by a merge.
+	 */
+	private final int nbPurged;
+
+	/**
+	 * Creates a segment whose documents are all live.
+	 * @param docBase The ID of the first document of the segment in the index.
+	 * @param size The number of documents of the segment.
+	 * @param postings The postings of each term by term ID, with document IDs
+	 * relative to docBase, null for the terms not in the segment.
+	 */
+	public PostingsSegment( int docBase, int size, CompressedPostings[] postings ) {
+		this( docBase, size, postings, new LiveDocs( size ), 0 );
+	}
+
+	private PostingsSegment( int docBase, int size, CompressedPostings[] postings, LiveDocs liveDocs, int nbPurged ) {
+		this.docBase = docBase;
+		this.size = size;
+		this.postings = postings;
+		this.liveDocs = liveDocs;
+		this.nbPurged = nbPurged;
+	}
+
+	/**
+	 * Merges consecutive segments into one, dropping the postings of their
+	 * deleted documents. Without compaction, the deleted documents keep their
+	 * ID and stay deleted in the merged segment. With compaction, they are
+	 * removed and the live documents are numbered again in the same order.
+	 * @param segments The segments to merge, in document order, without gap.
+	 * @param nbTerms The number of terms of the dictionary.
+	 * @param codec The codec compressing the merged postings.
+	 * @param docLengths The number of distinct terms of each document of the
+	 * index, by document ID after the merge.
+	 * @param docNorms The norm of each document vector of the index, by
+	 * document ID after the merge.
+	 * @param compact True to remove the deleted documents from the merged segment.
+	 * @return The segment of all the documents of the merged segments.
+	 */
+	public static PostingsSegment merge( List<PostingsSegment> segments, int nbTerms, PostingsCodec codec,
+			int[] docLengths, double[] docNorms, boolean compact ) {
+		int docBase = segments.get( 0 ).docBase;
+		int size = 0;
+		int nbDeleted = 0;
+		for ( PostingsSegment segment : segments ) {
+			size += segment.size;
+			nbDeleted += segment.getNbDeleted();
+		}
+		// new ID of each document relative to docBase, -1 for the deleted ones
+		int[] newIds = new int[size];
+		int nbLive = 0;
+		for ( PostingsSegment segment : segments ) {
+			int shift = segment.docBase - docBase;
+			for ( int doc = 0 ; doc < segment.size ; doc++ ) {
+				newIds[shift + doc] = !segment.isLive( doc ) ? -1 : compact ? nbLive++ : shift + doc;
+			}
+		}
+		int newSize = compact ? size - nbDeleted : size;
+		int[] lengths = Arrays.copyOfRange( docLengths, docBase, docBase + newSize );
+		double[] norms = Arrays.copyOfRange( docNorms, docBase, docBase + newSize );
+
+		CompressedPostings[] postings = new CompressedPostings[nbTerms];
+		for ( int termId = 0 ; termId < nbTerms ; termId++ ) {
+			PostingsList merged = null;
+			for ( PostingsSegment segment : segments ) {
+				CompressedPostings part = segment.getPostings( termId );
+				if ( part == null ) {
+					continue;
+				}
+				if ( merged == null ) {
+					merged = new PostingsList();
+				}
+				int shift = segment.docBase - docBase;
+				PostingsCursor cursor = part.cursor();
+				for ( int doc = cursor.nextDoc() ; doc != PostingsCursor.NO_MORE_DOCS ; doc = cursor.nextDoc() ) {
+					if ( newIds[shift + doc] >= 0 ) {
+						merged.add( newIds[shift + doc], cursor.tf() );
+					}
+				}
+			}
+			if ( merged != null && merged.size() > 0 ) {
+				postings[termId] = CompressedPostings.compress( termId, merged, codec, lengths, norms );
+			}
+		}
+
+		LiveDocs liveDocs = new LiveDocs( newSize );
+		if ( !compact ) {
+			for ( int doc = 0 ; doc < size ; doc++ ) {
+				if ( newIds[doc] < 0 ) {
+					liveDocs.delete( doc );
+				}
+			}
+		}
+		return new PostingsSegment( docBase, newSize, postings, liveDocs, liveDocs.getNbDeleted() );
+	}
+
+	/**
+	 * Returns the ID of the first document of the segment in the index.
+	 * @return The document ID base of the segment.
+	 */
+	public int getDocBase() {
+		return this.docBase;
+	}
+
+	/**
+	 * Returns the number of documents of the segment.
+	 * @return The number of documents.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Tells if a document of the segment is live.
+	 * @param doc The ID of the document relative to the segment.
+	 * @return True if the document is not deleted.
+	 */
+	public boolean isLive( int doc ) {
+		return this.liveDocs.isLive( doc );
+	}
+
+	/**
+	 * Deletes a document of the segment.
+	 * @param doc The ID of the document relative to the segment.
+	 * @return True if the document was live, false if it was already deleted.
+	 */
+	public boolean delete( int doc ) {
+		return this.liveDocs.delete( doc );
+	}
+
+	/**
+	 * Returns the number of deleted documents of the segment.
+	 * @return The number of deleted documents, purged or not.
+	 */
+	public int getNbDeleted() {
+		return this.liveDocs.getNbDeleted();
+	}
+
+	/**
+	 * Tells if documents were deleted since the postings of the segment were
+	 * written, the cursors over the postings then having to skip them.
+	 * @return True if the postings contain deleted documents.
+	 */
+	public boolean hasPendingDeletes() {
+		return this.liveDocs.getNbDeleted() > this.nbPurged;
+	}
+
+	/**
+	 * Tells if documents of the segment contain a term, without creating the
+	 * view skipping the deleted documents.
+	 * @param termId The ID of the term.
+	 * @return True if the segment has postings for the term, including
+	 * postings of deleted documents not purged yet.
+	 */
+	public boolean hasPostings( int termId ) {
+		return termId < this.postings.length && this.postings[termId] != null;
+	}
+
+	/**
+	 * Returns the postings of a term in the segment.
+	 * @param termId The ID of the term.
+	 * @return The postings of the term, with document IDs relative to the
+	 * segment and skipping the deleted documents, or null if no document of
+	 * the segment contains the term.
+	 */
+	public CompressedPostings getPostings( int termId ) {
+		CompressedPostings termPostings = termId < this.postings.length ? this.postings[termId] : null;
+		if ( termPostings == null || !this.hasPendingDeletes() ) {
+			return termPostings;
+		}
+		return termPostings.withLiveDocs( this.liveDocs );
+	}
+
+	/**
+	 * Returns the postings of a term in the segment as a view of its live
+	 * documents, even when no document is deleted yet, so that the view skips
+	 * the documents deleted after it is created.
+	 * @param termId The ID of the term.
+	 * @return The view of the postings of the term, or null if no document
+	 * of the segment contains the term.
+	 */
+	public CompressedPostings getLivePostings( int termId ) {
+		CompressedPostings termPostings = termId < this.postings.length ? this.postings[termId] : null;
+		return termPostings == null ? null : termPostings.withLiveDocs( this.liveDocs );
+	}
+}
@@ -0,0 +1,174 @@
+package tp2.searchEngine.index;
+
+/**
+ * Postings of a term spread over several index segments. The segments hold
+ * consecutive ranges of documents, in increasing order, so the postings of
+ * the term are the postings of each segment one after the other, their
+ * document IDs shifted by the first document of the segment. The statistics
+ * count the deleted documents that the cursors of the parts skip, so they
+ * stay upper bounds of the live postings.
+ */
+public class SegmentedPostings implements Postings {
+
+	private final int termId;
+
+	/**
+	 * Postings of the term in each segment containing it, in document order.
+	 */
+	private final CompressedPostings[] parts;
+
+	/**
+	 * First document of the segment of each part.
+	 */
+	private final int[] docBases;
+
+	/**
+	 * Creates the postings of a term over segments.
+	 * @param termId The dense ID of the term.
+	 * @param parts The postings of the term in each segment, in document order.
+	 * @param docBases The first document of the segment of each part.
+	 */
+	public SegmentedPostings( int termId, CompressedPostings[] parts, int[] docBases ) {
+		this.termId = termId;
+		this.parts = parts;
+		this.docBases = docBases;
+	}
+
+	@Override
+	public int getTermId() {
+		return this.termId;
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for ( CompressedPostings part : this.parts ) {
+			size += part.size();
+		}
+		return size;
+	}
+
+	@Override
+	public int getMaxTf() {
+		int max = 0;
+		for ( CompressedPostings part : this.parts ) {
+			max = Math.max( max, part.getMaxTf() );
+		}
+		return max;
+	}
+
+	@Override
+	public double getMaxNormalizedTf() {
+		double max = 0;
+		for ( CompressedPostings part : this.parts ) {
+			max = Math.max( max, part.getMaxNormalizedTf() );
+		}
+		return max;
+	}
+
+	@Override
+	public int getMinLength() {
+		int min = Integer.MAX_VALUE;
+		for ( CompressedPostings part : this.parts ) {
+			min = Math.min( min, part.getMinLength() );
+		}
+		return min;
+	}
+
+	@Override
+	public PostingsCursor cursor() {
+		return new SegmentedCursor();
+	}
+
+	/**
+	 * Cursor moving through the cursors of the parts one after the other. The
+	 * block metadata is the one of the part reached by the cursor or by
+	 * shallowAdvance.
+	 */
+	private class SegmentedCursor implements PostingsCursor {
+
+		private final PostingsCursor[] cursors = new PostingsCursor[parts.length];
+		private int part = 0;
+		private int shallowPart = 0;
+		private int doc = -1;
+
+		SegmentedCursor() {
+			for ( int i = 0 ; i < parts.length ; i++ ) {
+				this.cursors[i] = parts[i].cursor();
+			}
+		}
+
+		@Override
+		public int nextDoc() {
+			while ( this.part < parts.length ) {
+				int next = this.cursors[this.part].nextDoc();
+				if ( next != NO_MORE_DOCS ) {
+					return this.doc = docBases[this.part] + next;
+				}
+				this.nextPart();
+			}
+			return this.doc = NO_MORE_DOCS;
+		}
+
+		@Override
+		public int nextGEQ( int target ) {
+			if ( this.doc >= target ) {
+				return this.doc;
+			}
+			while ( this.part + 1 < parts.length && docBases[this.part + 1] <= target ) {
+				this.nextPart();
+			}
+			while ( this.part < parts.length ) {
+				int next = this.cursors[this.part].nextGEQ( Math.max( 0, target - docBases[this.part] ) );
+				if ( next != NO_MORE_DOCS ) {
+					return this.doc = docBases[this.part] + next;
+				}
+				this.nextPart();
+			}
+			return this.doc = NO_MORE_DOCS;
+		}
+
+		@Override
+		public int shallowAdvance( int target ) {
+			while ( this.shallowPart < parts.length ) {
+				int base = docBases[this.shallowPart];
+				int lastDoc = this.cursors[this.shallowPart].shallowAdvance( Math.max( 0, target - base ) );
+				if ( lastDoc != NO_MORE_DOCS ) {
+					return base + lastDoc;
+				}
+				this.shallowPart++;
+			}
+			return NO_MORE_DOCS;
+		}
+
+		@Override
+		public int blockMaxTf() {
+			return this.shallowPart < parts.length ? this.cursors[this.shallowPart].blockMaxTf() : 0;
+		}
+
+		@Override
+		public double blockMaxNormalizedTf() {
+			return this.shallowPart < parts.length ? this.cursors[this.shallowPart].blockMaxNormalizedTf() : 0;
+		}
+
+		@Override
+		public int blockMinLength() {
+			return this.shallowPart < parts.length ? this.cursors[this.shallowPart].blockMinLength() : Integer.MAX_VALUE;
+		}
+
+		@Override
+		public int docId() {
+			return this.doc;
+		}
+
+		@Override
+		public int tf() {
+			return this.part < parts.length ? this.cursors[this.part].tf() : 0;
+		}
+
+		private void nextPart() {
+			this.part++;
+			this.shallowPart = Math.max( this.shallowPart, this.part );
+		}
+	}
+}
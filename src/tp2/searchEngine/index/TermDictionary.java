@@ -0,0 +1,313 @@
+package tp2.searchEngine.index;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Dictionary mapping terms to dense int IDs, in order of insertion.
+ * Terms are stored in an open-addressing hash table with linear probing; each
+ * term is stored once and the dictionary instance is returned for all equal
+ * strings, so the rest of the engine can work on term IDs or on shared strings.
+ * The dictionary also keeps the document frequency and the collection
+ * frequency (total number of occurrences) of each term.
+ * Lookups can be done on a String, any CharSequence or a slice of a char array
+ * without allocation.
+ */
+public class TermDictionary {
+
+	/**
+	 * Value of the empty slots of the hash table.
+	 */
+	private static final int EMPTY = -1;
+
+	/**
+	 * Maximum ratio of used slots in the hash table before it grows.
+	 */
+	private static final float LOAD_FACTOR = 0.5f;
+
+	/**
+	 * Hash table of term IDs, with a power of two size.
+	 */
+	private int[] table;
+
+	/**
+	 * Terms by ID.
+	 */
+	private String[] terms;
+
+	/**
+	 * Hash code of the terms by ID.
+	 */
+	private int[] hashes;
+
+	/**
+	 * Document frequency of the terms by ID.
+	 */
+	private int[] docFrequencies;
+
+	/**
+	 * Collection frequency of the terms by ID.
+	 */
+	private long[] collectionFrequencies;
+
+	/**
+	 * Number of terms in the dictionary.
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty dictionary.
+	 */
+	public TermDictionary() {
+		this( 1024 );
+	}
+
+	/**
+	 * Creates an empty dictionary.
+	 * @param expectedSize The expected number of terms.
+	 */
+	public TermDictionary( int expectedSize ) {
+		int capacity = Integer.highestOneBit( Math.max( 16, (int) ( expectedSize / LOAD_FACTOR ) ) - 1 ) << 1;
+		this.table = new int[capacity];
+		Arrays.fill( this.table, EMPTY );
+		this.terms = new String[Math.max( 16, expectedSize )];
+		this.hashes = new int[this.terms.length];
+		this.docFrequencies = new int[this.terms.length];
+		this.collectionFrequencies = new long[this.terms.length];
+		this.size = 0;
+	}
+
+	/**
+	 * Creates a copy of a dictionary, with the same term IDs and frequencies.
+	 * Changing one of the dictionaries does not change the other.
+	 * @param other The dictionary to copy.
+	 */
+	public TermDictionary( TermDictionary other ) {
+		this.table = other.table.clone();
+		this.terms = other.terms.clone();
+		this.hashes = other.hashes.clone();
+		this.docFrequencies = other.docFrequencies.clone();
+		this.collectionFrequencies = other.collectionFrequencies.clone();
+		this.size = other.size;
+	}
+
+	/**
+	 * Adds a term to the dictionary if it is not already in it.
+	 * @param term The term to add.
+	 * @return The ID of the term.
+	 */
+	public int add( String term ) {
+		int hash = hash( term );
+		int slot = this.find( term, hash );
+		if ( this.table[slot] != EMPTY ) {
+			return this.table[slot];
+		}
+		if ( this.size == this.terms.length ) {
+			int capacity = this.size << 1;
+			this.terms = Arrays.copyOf( this.terms, capacity );
+			this.hashes = Arrays.copyOf( this.hashes, capacity );
+			this.docFrequencies = Arrays.copyOf( this.docFrequencies, capacity );
+			this.collectionFrequencies = Arrays.copyOf( this.collectionFrequencies, capacity );
+		}
+		int id = this.size++;
+		this.terms[id] = term;
+		this.hashes[id] = hash;
+		this.table[slot] = id;
+		if ( this.size > this.table.length * LOAD_FACTOR ) {
+			this.rehash();
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the ID of a term.
+	 * @param term The term to look up.
+	 * @return The ID of the term, or -1 if the term is not in the dictionary.
+	 */
+	public int getId( CharSequence term ) {
+		return this.table[this.find( term, hash( term ) )];
+	}
+
+	/**
+	 * Returns the ID of a term given as a slice of a char array.
+	 * @param buffer The array containing the term.
+	 * @param offset The position of the first char of the term.
+	 * @param length The length of the term.
+	 * @return The ID of the term, or -1 if the term is not in the dictionary.
+	 */
+	public int getId( char[] buffer, int offset, int length ) {
+		int hash = 0;
+		for ( int i = 0 ; i < length ; i++ ) {
+			hash = 31 * hash + buffer[offset + i];
+		}
+		int mask = this.table.length - 1;
+		for ( int slot = mix( hash ) & mask ; ; slot = ( slot + 1 ) & mask ) {
+			int id = this.table[slot];
+			if ( id == EMPTY || ( this.hashes[id] == hash && equals( this.terms[id], buffer, offset, length ) ) ) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Returns the dictionary instance of a term, adding the term if needed.
+	 * @param term The term.
+	 * @return The string stored in the dictionary equal to term.
+	 */
+	public String intern( String term ) {
+		return this.terms[this.add( term )];
+	}
+
+	/**
+	 * Returns the term of an ID.
+	 * @param id The ID of the term.
+	 * @return The term.
+	 */
+	public String getTerm( int id ) {
+		return this.terms[id];
+	}
+
+	/**
+	 * Records occurrences of a term.
+	 * @param id The ID of the term.
+	 * @param documents The number of new documents containing the term.
+	 * @param occurrences The number of new occurrences of the term.
+	 */
+	public void addOccurrences( int id, int documents, long occurrences ) {
+		this.docFrequencies[id] += documents;
+		this.collectionFrequencies[id] += occurrences;
+	}
+
+	/**
+	 * Returns the number of documents containing a term.
+	 * @param id The ID of the term.
+	 * @return The document frequency of the term.
+	 */
+	public int getDocFrequency( int id ) {
+		return this.docFrequencies[id];
+	}
+
+	/**
+	 * Returns the number of occurrences of a term in the collection.
+	 * @param id The ID of the term.
+	 * @return The collection frequency of the term.
+	 */
+	public long getCollectionFrequency( int id ) {
+		return this.collectionFrequencies[id];
+	}
+
+	/**
+	 * Returns the number of terms in the dictionary.
+	 * @return The number of distinct terms.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Writes the terms and their frequencies in the format read by {@link #read}.
+	 * @param out The stream to write into.
+	 * @throws IOException If the dictionary cannot be written.
+	 */
+	public void write( DataOutputStream out ) throws IOException {
+		out.writeInt( this.size );
+		for ( int id = 0 ; id < this.size ; id++ ) {
+			out.writeInt( this.docFrequencies[id] );
+			out.writeLong( this.collectionFrequencies[id] );
+			out.writeShort( this.terms[id].length() );
+			out.writeChars( this.terms[id] );
+		}
+	}
+
+	/**
+	 * Reads a dictionary written by {@link #write}, the terms keeping their IDs.
+	 * @param in The buffer, positioned at the start of the dictionary and moved after its end.
+	 * @return The dictionary.
+	 */
+	public static TermDictionary read( ByteBuffer in ) {
+		int size = in.getInt();
+		TermDictionary dictionary = new TermDictionary( size );
+		char[] buffer = new char[64];
+		for ( int id = 0 ; id < size ; id++ ) {
+			int docFrequency = in.getInt();
+			long collectionFrequency = in.getLong();
+			int length = in.getShort() & 0xFFFF;
+			if ( buffer.length < length ) {
+				buffer = new char[length];
+			}
+			in.asCharBuffer().get( buffer, 0, length );
+			in.position( in.position() + 2 * length );
+			dictionary.add( new String( buffer, 0, length ) );
+			dictionary.addOccurrences( id, docFrequency, collectionFrequency );
+		}
+		return dictionary;
+	}
+
+	// slot of the term, or empty slot where it would be inserted
+	private int find( CharSequence term, int hash ) {
+		int mask = this.table.length - 1;
+		for ( int slot = mix( hash ) & mask ; ; slot = ( slot + 1 ) & mask ) {
+			int id = this.table[slot];
+			if ( id == EMPTY || ( this.hashes[id] == hash && equals( this.terms[id], term ) ) ) {
+				return slot;
+			}
+		}
+	}
+
+	private void rehash() {
+		this.table = new int[this.table.length << 1];
+		Arrays.fill( this.table, EMPTY );
+		int mask = this.table.length - 1;
+		for ( int id = 0 ; id < this.size ; id++ ) {
+			int slot = mix( this.hashes[id] ) & mask;
+			while ( this.table[slot] != EMPTY ) {
+				slot = ( slot + 1 ) & mask;
+			}
+			this.table[slot] = id;
+		}
+	}
+
+	// same value as String.hashCode for any CharSequence
+	private static int hash( CharSequence term ) {
+		if ( term instanceof String ) {
+			return term.hashCode();
+		}
+		int hash = 0;
+		for ( int i = 0 ; i < term.length() ; i++ ) {
+			hash = 31 * hash + term.charAt( i );
+		}
+		return hash;
+	}
+
+	// spreads the low-entropy bits of String hash codes over the table
+	private static int mix( int hash ) {
+		hash *= 0x9E3779B9;
+		return hash ^ ( hash >>> 16 );
+	}
+
+	private static boolean equals( String stored, CharSequence term ) {
+		if ( stored.length() != term.length() ) {
+			return false;
+		}
+		for ( int i = 0 ; i < stored.length() ; i++ ) {
+			if ( stored.charAt( i ) != term.charAt( i ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean equals( String stored, char[] buffer, int offset, int length ) {
+		if ( stored.length() != length ) {
+			return false;
+		}
+		for ( int i = 0 ; i < length ; i++ ) {
+			if ( stored.charAt( i ) != buffer[offset + i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,198 @@
+package tp2.searchEngine.index;
+
+import java.util.Arrays;
+
+/**
+ * Frequencies of the terms of a text, by term ID: the term-ID counterpart of
+ * WordBag. Counts are kept in an open-addressing hash table with linear
+ * probing over parallel int arrays, so counting an occurrence is one probe
+ * without boxing. Clearing only resets the used slots and keeps the arrays,
+ * so an instance can be reused from one text to the next.
+ * Once counted, the distinct term IDs are read in increasing order, and
+ * freeze gives the compact TermVector of the text.
+ */
+public class TermFrequencies {
+
+	/**
+	 * Value of the empty slots of the hash table.
+	 */
+	private static final int EMPTY = -1;
+
+	/**
+	 * Term ID of each slot of the hash table, with a power of two size.
+	 */
+	private int[] keys;
+
+	/**
+	 * Frequency of the term of each slot.
+	 */
+	private int[] counts;
+
+	/**
+	 * Slots used, in order of first occurrence of their term.
+	 */
+	private int[] usedSlots;
+
+	/**
+	 * Number of distinct terms.
+	 */
+	private int size;
+
+	/**
+	 * Distinct term IDs in increasing order and their frequencies, once counted.
+	 */
+	private int[] sortedIds;
+	private int[] sortedTfs;
+
+	/**
+	 * Whether the sorted arrays are up to date.
+	 */
+	private boolean counted;
+
+	/**
+	 * Creates an empty instance.
+	 */
+	public TermFrequencies() {
+		this.keys = new int[64];
+		Arrays.fill( this.keys, EMPTY );
+		this.counts = new int[64];
+		this.usedSlots = new int[32];
+		this.sortedIds = new int[32];
+		this.sortedTfs = new int[32];
+		this.size = 0;
+		this.counted = true;
+	}
+
+	/**
+	 * Forgets all the occurrences.
+	 */
+	public void clear() {
+		for ( int i = 0 ; i < this.size ; i++ ) {
+			this.keys[this.usedSlots[i]] = EMPTY;
+		}
+		this.size = 0;
+		this.counted = true;
+	}
+
+	/**
+	 * Records an occurrence of a term.
+	 * @param termId The ID of the term, positive or zero.
+	 */
+	public void add( int termId ) {
+		this.add( termId, 1 );
+	}
+
+	/**
+	 * Records occurrences of a term.
+	 * @param termId The ID of the term, positive or zero.
+	 * @param count The number of occurrences.
+	 */
+	public void add( int termId, int count ) {
+		int slot = this.find( termId );
+		if ( this.keys[slot] == EMPTY ) {
+			if ( this.size == this.usedSlots.length ) {
+				this.usedSlots = Arrays.copyOf( this.usedSlots, this.size << 1 );
+			}
+			this.keys[slot] = termId;
+			this.counts[slot] = count;
+			this.usedSlots[this.size++] = slot;
+			if ( this.size > this.keys.length >>> 1 ) {
+				this.rehash();
+			}
+		} else {
+			this.counts[slot] += count;
+		}
+		this.counted = false;
+	}
+
+	/**
+	 * Returns the frequency of a term.
+	 * @param termId The ID of the term.
+	 * @return The number of occurrences of the term.
+	 */
+	public int frequency( int termId ) {
+		int slot = this.find( termId );
+		return this.keys[slot] == EMPTY ? 0 : this.counts[slot];
+	}
+
+	/**
+	 * Sorts the distinct terms by ID, to read them with getTermId and getTf.
+	 */
+	public void count() {
+		if ( this.counted ) {
+			return;
+		}
+		if ( this.sortedIds.length < this.size ) {
+			this.sortedIds = new int[this.usedSlots.length];
+			this.sortedTfs = new int[this.usedSlots.length];
+		}
+		for ( int i = 0 ; i < this.size ; i++ ) {
+			this.sortedIds[i] = this.keys[this.usedSlots[i]];
+		}
+		Arrays.sort( this.sortedIds, 0, this.size );
+		for ( int i = 0 ; i < this.size ; i++ ) {
+			this.sortedTfs[i] = this.frequency( this.sortedIds[i] );
+		}
+		this.counted = true;
+	}
+
+	/**
+	 * Returns a compact immutable copy of the frequencies.
+	 * @return The term vector of the counted text.
+	 */
+	public TermVector freeze() {
+		this.count();
+		return new TermVector( Arrays.copyOf( this.sortedIds, this.size ), Arrays.copyOf( this.sortedTfs, this.size ) );
+	}
+
+	/**
+	 * Returns the number of distinct terms.
+	 * @return The number of distinct terms.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the ID of the i-th distinct term, in increasing order of ID, once counted.
+	 * @param i The index of the term, between 0 and size() - 1.
+	 * @return The ID of the term.
+	 */
+	public int getTermId( int i ) {
+		return this.sortedIds[i];
+	}
+
+	/**
+	 * Returns the frequency of the i-th distinct term, once counted.
+	 * @param i The index of the term, between 0 and size() - 1.
+	 * @return The number of occurrences of the term.
+	 */
+	public int getTf( int i ) {
+		return this.sortedTfs[i];
+	}
+
+	// slot of the term, or empty slot where it would be inserted
+	private int find( int termId ) {
+		int mask = this.keys.length - 1;
+		int slot = ( termId * 0x9E3779B9 ) >>> 16 & mask;
+		while ( this.keys[slot] != EMPTY && this.keys[slot] != termId ) {
+			slot = ( slot + 1 ) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash() {
+		int[] oldKeys = this.keys;
+		int[] oldCounts = this.counts;
+		this.keys = new int[oldKeys.length << 1];
+		Arrays.fill( this.keys, EMPTY );
+		this.counts = new int[this.keys.length];
+		for ( int i = 0 ; i < this.size ; i++ ) {
+			int oldSlot = this.usedSlots[i];
+			int slot = this.find( oldKeys[oldSlot] );
+			this.keys[slot] = oldKeys[oldSlot];
+			this.counts[slot] = oldCounts[oldSlot];
+			this.usedSlots[i] = slot;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package tp2.searchEngine.index;
+
+import java.util.Arrays;
+
+/**
+ * Immutable frequencies of the terms of a text, stored as two parallel arrays
+ * sorted by term ID. This is the compact form of TermFrequencies, meant to be
+ * kept once the text is analysed.
+ */
+public class TermVector {
+
+	/**
+	 * Distinct term IDs, in increasing order.
+	 */
+	private final int[] termIds;
+
+	/**
+	 * Frequencies of the terms, parallel to termIds.
+	 */
+	private final int[] tfs;
+
+	/**
+	 * Creates a term vector. The arrays are not copied.
+	 * @param termIds The distinct term IDs, in increasing order.
+	 * @param tfs The frequencies of the terms.
+	 */
+	public TermVector( int[] termIds, int[] tfs ) {
+		this.termIds = termIds;
+		this.tfs = tfs;
+	}
+
+	/**
+	 * Returns the number of distinct terms.
+	 * @return The number of distinct terms.
+	 */
+	public int size() {
+		return this.termIds.length;
+	}
+
+	/**
+	 * Returns the ID of the i-th term, in increasing order of ID.
+	 * @param i The index of the term, between 0 and size() - 1.
+	 * @return The ID of the term.
+	 */
+	public int getTermId( int i ) {
+		return this.termIds[i];
+	}
+
+	/**
+	 * Returns the frequency of the i-th term.
+	 * @param i The index of the term, between 0 and size() - 1.
+	 * @return The number of occurrences of the term.
+	 */
+	public int getTf( int i ) {
+		return this.tfs[i];
+	}
+
+	/**
+	 * Returns the frequency of a term.
+	 * @param termId The ID of the term.
+	 * @return The number of occurrences of the term, 0 if it is not in the vector.
+	 */
+	public int frequency( int termId ) {
+		int i = Arrays.binarySearch( this.termIds, termId );
+		return i < 0 ? 0 : this.tfs[i];
+	}
+}
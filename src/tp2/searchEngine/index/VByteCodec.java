@@ -0,0 +1,67 @@
+package tp2.searchEngine.index;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-byte postings codec: each value is written on as many bytes as
+ * needed, 7 bits per byte, the high bit of a byte telling that more bytes follow.
+ * All the gaps of a block are written first, then all the frequencies.
+ */
+public class VByteCodec implements PostingsCodec {
+
+	@Override
+	public void encodeBlock( int[] docGaps, int[] tfs, int length, ByteArrayOutputStream out ) {
+		for ( int i = 0 ; i < length ; i++ ) {
+			writeVInt( docGaps[i], out );
+		}
+		for ( int i = 0 ; i < length ; i++ ) {
+			writeVInt( tfs[i], out );
+		}
+	}
+
+	@Override
+	public int decodeBlock( ByteBuffer in, int offset, int[] docGaps, int[] tfs, int length ) {
+		offset = readVInts( in, offset, docGaps, length );
+		return readVInts( in, offset, tfs, length );
+	}
+
+	@Override
+	public int getId() {
+		return 0;
+	}
+
+	/**
+	 * Writes a non-negative int as a variable-byte sequence.
+	 * @param value The value to write.
+	 * @param out The stream to write into.
+	 */
+	static void writeVInt( int value, ByteArrayOutputStream out ) {
+		while ( ( value & ~0x7F ) != 0 ) {
+			out.write( ( value & 0x7F ) | 0x80 );
+			value >>>= 7;
+		}
+		out.write( value );
+	}
+
+	/**
+	 * Reads a sequence of variable-byte ints.
+	 * @param in The buffer to read from.
+	 * @param offset The position of the first value.
+	 * @param values Array receiving the values.
+	 * @param length The number of values to read.
+	 * @return The position following the last value.
+	 */
+	static int readVInts( ByteBuffer in, int offset, int[] values, int length ) {
+		for ( int i = 0 ; i < length ; i++ ) {
+			int b = in.get( offset++ );
+			int value = b & 0x7F;
+			for ( int shift = 7 ; b < 0 ; shift += 7 ) {
+				b = in.get( offset++ );
+				value |= ( b & 0x7F ) << shift;
+			}
+			values[i] = value;
+		}
+		return offset;
+	}
+}
@@ -0,0 +1,158 @@
+package tp2.searchEngine.utils;
+
+import tp2.searchEngine.index.TermDictionary;
+import tp2.searchEngine.index.TermFrequencies;
+
+/**
+ * Analysis chain turning a text into term frequencies, in a single pass over
+ * the text: each token read from the tokenizer, lowercased, goes through the
+ * filters in order (stop-list, stemmer...) and is counted under its term ID as
+ * soon as it passes them. No array of tokens is built between the stages.
+ * The same analyzer code is used for documents and queries, so both are
+ * analysed identically.
+ * An analyzer keeps state between tokens and its filters may too (stemmers),
+ * so it must not be shared between threads.
+ */
+public class Analyzer {
+
+	/**
+	 * Stage of the analysis chain, which can drop or rewrite the current token.
+	 */
+	public interface TokenFilter {
+
+		/**
+		 * Processes a token.
+		 * @param token The current token, which the filter may modify.
+		 * @return True to keep the token, false to drop it.
+		 */
+		boolean accept( Token token );
+	}
+
+	/**
+	 * Token going through the analysis chain, stored in a reusable char buffer.
+	 */
+	public static class Token {
+
+		/**
+		 * Chars of the token, from index 0.
+		 */
+		private char[] buffer = new char[32];
+
+		/**
+		 * Length of the token.
+		 */
+		private int length;
+
+		/**
+		 * The token as a string, null until requested.
+		 */
+		private String term;
+
+		/**
+		 * Returns the buffer holding the token, from index 0.
+		 * @return The token buffer.
+		 */
+		public char[] buffer() {
+			return this.buffer;
+		}
+
+		/**
+		 * Returns the length of the token.
+		 * @return The number of chars of the token in the buffer.
+		 */
+		public int length() {
+			return this.length;
+		}
+
+		/**
+		 * Returns the token as a string, created once per token value.
+		 * @return The token.
+		 */
+		public String term() {
+			if ( this.term == null ) {
+				this.term = new String( this.buffer, 0, this.length );
+			}
+			return this.term;
+		}
+
+		/**
+		 * Replaces the token with a slice of a char array.
+		 * @param chars The array containing the new token.
+		 * @param offset The position of the first char of the new token.
+		 * @param length The length of the new token.
+		 */
+		public void setTerm( char[] chars, int offset, int length ) {
+			this.reserve( length );
+			System.arraycopy( chars, offset, this.buffer, 0, length );
+			this.length = length;
+			this.term = null;
+		}
+
+		/**
+		 * Replaces the token with a string.
+		 * @param term The new token.
+		 */
+		public void setTerm( String term ) {
+			this.reserve( term.length() );
+			term.getChars( 0, term.length(), this.buffer, 0 );
+			this.length = term.length();
+			this.term = term;
+		}
+
+		private void reserve( int capacity ) {
+			if ( capacity > this.buffer.length ) {
+				this.buffer = new char[Math.max( capacity, this.buffer.length << 1 )];
+			}
+		}
+	}
+
+	private final Tokenizer.TokenStream tokens;
+
+	private final TokenFilter[] filters;
+
+	private final Token token;
+
+	/**
+	 * Creates an analysis chain.
+	 * Example of use: new Analyzer( tokenizer, stopList, new Stemmer( Stemmer.StemmerLanguage.ENGLISH ) )
+	 * @param tokenizer The tokenizer splitting the texts, whose tokens are lowercased.
+	 * @param filters The filters applied to each token, in order.
+	 */
+	public Analyzer( Tokenizer tokenizer, TokenFilter... filters ) {
+		this.tokens = tokenizer.tokenStream( true );
+		this.filters = filters.clone();
+		this.token = new Token();
+	}
+
+	/**
+	 * Analyses a text and counts its terms. Terms missing from the dictionary
+	 * are added to it.
+	 * @param text The text to analyse.
+	 * @param dictionary The dictionary giving the term IDs.
+	 * @param frequencies Receives the frequencies of the terms of the text, cleared first.
+	 * @return The number of distinct terms of the text.
+	 */
+	public int analyze( CharSequence text, TermDictionary dictionary, TermFrequencies frequencies ) {
+		frequencies.clear();
+		this.tokens.reset( text );
+
+		tokens:
+		while ( this.tokens.next() ) {
+			this.token.setTerm( this.tokens.buffer(), 0, this.tokens.length() );
+			for ( TokenFilter filter : this.filters ) {
+				if ( !filter.accept( this.token ) ) {
+					continue tokens;
+				}
+			}
+
+			int termId = dictionary.getId( this.token.buffer(), 0, this.token.length() );
+			if ( termId < 0 ) {
+				termId = dictionary.add( this.token.term() );
+			}
+			frequencies.add( termId );
+		}
+
+		frequencies.count();
+		return frequencies.size();
+	}
+}
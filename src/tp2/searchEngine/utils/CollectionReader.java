@@ -3,6 +3,12 @@ package tp2.searchEngine.utils;
 import java.io.File;
 import java.io.IOException;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
@@ -40,6 +46,11 @@ import tp2.searchEngine.DocumentInfo;
  */
 public class CollectionReader implements ContentHandler {
 
+	/**
+	 * Marker put at the end of the queues returned by streamDatabaseFile.
+	 */
+	public static final DocumentInfo END_OF_STREAM = new DocumentInfo();
+
 	/**
 	 * Vector of DocumentInfo objects describing the content of the documents
 	 */
@@ -51,22 +62,44 @@ public class CollectionReader implements ContentHandler {
 	private DocumentInfo currentDocumentInfo;
 	
 	/**
-	 * Text being currently parsed
+	 * Text being currently parsed, accumulated over the calls to characters
+	 */
+	private StringBuilder currentData;
+	
+	/**
+	 * Whether characters was called since the text was last reset
+	 */
+	private boolean hasData;
+	
+	/**
+	 * Receiver of the parsed documents in streaming mode, null otherwise
 	 */
-	private String currentData;
+	private Consumer<DocumentInfo> consumer;
 	
 	/**
 	 * Constructor for a CollectionReader object
 	 */
 	public CollectionReader() {
+		this( null );
+	}
+	
+	/**
+	 * Constructor for a streaming CollectionReader object: each document is
+	 * given to the consumer as soon as it is parsed instead of being kept in the
+	 * database.
+	 * @param consumer The receiver of the parsed documents, null to build the database.
+	 */
+	public CollectionReader( Consumer<DocumentInfo> consumer ) {
 		this.database = null;
-		this.currentData = null;
+		this.currentData = new StringBuilder();
+		this.hasData = false;
 		this.currentDocumentInfo = null;
+		this.consumer = consumer;
 	}
 	
 	/**
 	 * Returns the database read during parsing as a vector of DocumentInfo objects.
-	 * @return The database read during the parsing.
+	 * @return The database read during the parsing, empty in streaming mode.
 	 */
 	public Vector<DocumentInfo> getDatabase() {
 		return this.database;
@@ -91,7 +124,7 @@ public class CollectionReader implements ContentHandler {
 			if ( this.currentDocumentInfo == null ) {
 				throw new SAXException( "Error in XML file format: <" + qName + "> markup found outside of <DOC> markup.");
 			}
-			this.currentData = null;
+			this.resetData();
 		}
 		return;
 	}
@@ -102,14 +135,18 @@ public class CollectionReader implements ContentHandler {
 		
 		if ( qName.equals( "DOC" ) ) {
 		
-			this.database.add( this.currentDocumentInfo );
+			if ( this.consumer != null ) {
+				this.consumer.accept( this.currentDocumentInfo );
+			} else {
+				this.database.add( this.currentDocumentInfo );
+			}
 			this.currentDocumentInfo = null;
 			
 		} else if ( qName.equals( "DOCID" ) ) {
 			
 			if ( this.currentDocumentInfo != null ) {
-				this.currentDocumentInfo.setId( Integer.parseInt( this.currentData ) );
-				this.currentData = null;
+				this.currentDocumentInfo.setId( Integer.parseInt( this.getData() ) );
+				this.resetData();
 			} else {
 				throw new SAXException( "Error in XML file format: closing </" + qName + "> markup without opening <" + qName + "> markup.");
 			}
@@ -117,8 +154,8 @@ public class CollectionReader implements ContentHandler {
 		} else if ( qName.equals( "TEXT") ) {
 
 			if ( this.currentDocumentInfo != null ) {
-				this.currentDocumentInfo.setContent( this.currentData );
-				this.currentData = null;
+				this.currentDocumentInfo.setContent( this.getData() );
+				this.resetData();
 			} else {
 				throw new SAXException( "Error in XML file format: closing </" + qName + "> markup without opening <" + qName + "> markup.");
 			}
@@ -130,14 +167,35 @@ public class CollectionReader implements ContentHandler {
 	@Override
 	public void characters(char[] ch, int start, int length)
 			throws SAXException {
-		if ( this.currentData == null ) {
-			this.currentData = new String( ch ).substring( start, start + length ).trim();
-		} else {
-			this.currentData += " " + new String( ch ).substring( start, start + length );
-			this.currentData = this.currentData.trim();
+		// consecutive chunks are separated by a single space, as if each one was trimmed
+		if ( this.hasData ) {
+			int end = this.currentData.length();
+			while ( end > 0 && this.currentData.charAt( end - 1 ) <= ' ' ) {
+				end--;
+			}
+			this.currentData.setLength( end );
+			this.currentData.append( ' ' );
 		}
+		this.currentData.append( ch, start, length );
+		this.hasData = true;
 		return;
 	}
+	
+	/**
+	 * Returns the text parsed since the last reset, trimmed.
+	 * @return The text parsed, or null if no text was parsed.
+	 */
+	private String getData() {
+		return this.hasData ? this.currentData.toString().trim() : null;
+	}
+	
+	/**
+	 * Forgets the text parsed, keeping the buffer for the next element.
+	 */
+	private void resetData() {
+		this.currentData.setLength( 0 );
+		this.hasData = false;
+	}
 
 	@Override
 	public void ignorableWhitespace(char[] ch, int start, int length)
@@ -193,6 +251,56 @@ public class CollectionReader implements ContentHandler {
 		
 		return database;
 	}
+	
+	/**
+	 * Reads a collection file at the TREC format in a background thread. The
+	 * documents are put in the returned queue as soon as they are parsed, the
+	 * parsing waiting while the queue is full, and the queue ends with
+	 * END_OF_STREAM, including when the file cannot be parsed.
+	 * @param databaseFilePath The path to the collection file.
+	 * @param window The maximum number of parsed documents waiting in the queue.
+	 * @return The queue of the documents of the collection.
+	 */
+	public static BlockingQueue<DocumentInfo> streamDatabaseFile( String databaseFilePath, int window ) {
+		final BlockingQueue<DocumentInfo> documents = new ArrayBlockingQueue<DocumentInfo>( Math.max( 1, window ) );
+		final File databaseFile = new File( databaseFilePath );
+		Thread reader = new Thread( new Runnable() {
+			public void run() {
+				try {
+					XMLReader parser = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+					parser.setContentHandler( new CollectionReader( new Consumer<DocumentInfo>() {
+						public void accept( DocumentInfo document ) {
+							try {
+								documents.put( document );
+							} catch ( InterruptedException ie ) {
+								Thread.currentThread().interrupt();
+								throw new IllegalStateException( "Parsing of " + databaseFile.getAbsolutePath() + " interrupted." );
+							}
+						}
+					} ) );
+					parser.parse( databaseFile.toURI().toString() );
+				} catch ( SAXException saxe ) {
+					System.err.println( "Error: cannot parse database file " + databaseFile.getAbsolutePath() + "." );
+					saxe.printStackTrace();
+				} catch ( IOException ioe ) {
+					System.err.println( "Error: cannot open database file " + databaseFile.getAbsolutePath() + "." );
+					ioe.printStackTrace();
+				} catch ( ParserConfigurationException pce ) {
+					System.err.println( "Error: cannot create a parser for database file " + databaseFile.getAbsolutePath() + "." );
+					pce.printStackTrace();
+				} finally {
+					try {
+						documents.put( END_OF_STREAM );
+					} catch ( InterruptedException ie ) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		}, "CollectionReader" );
+		reader.setDaemon( true );
+		reader.start();
+		return documents;
+	}
 		
 
 }
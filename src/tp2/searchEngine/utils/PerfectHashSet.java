@@ -0,0 +1,212 @@
+package tp2.searchEngine.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+/**
+ * Immutable set of strings stored with a minimal perfect hash function built
+ * with the CHD (compress, hash and displace) algorithm: the n strings are
+ * spread in buckets, and each bucket stores the displacement sending all its
+ * strings to free slots of a table of exactly n slots. A lookup hashes the
+ * chars once, reads one displacement and compares the chars with the single
+ * candidate string, without allocating, so strings can be looked up as any
+ * CharSequence or as a slice of a char array.
+ */
+public class PerfectHashSet {
+
+	/**
+	 * Average number of strings per bucket.
+	 */
+	private static final int BUCKET_SIZE = 4;
+
+	/**
+	 * Number of hash seeds tried before giving up.
+	 */
+	private static final int MAX_SEEDS = 64;
+
+	/**
+	 * Seed of the hash function.
+	 */
+	private final long seed;
+
+	/**
+	 * Displacement of each bucket.
+	 */
+	private final int[] displacements;
+
+	/**
+	 * Strings by slot.
+	 */
+	private final char[][] slots;
+
+	/**
+	 * Builds the set of the given strings.
+	 * @param strings The strings of the set, duplicates being ignored.
+	 */
+	public PerfectHashSet( Collection<String> strings ) {
+		String[] keys = new LinkedHashSet<String>( strings ).toArray( new String[0] );
+		int n = keys.length;
+		int nbBuckets = Math.max( 1, ( n + BUCKET_SIZE - 1 ) / BUCKET_SIZE );
+
+		for ( long seed = 1 ; seed <= MAX_SEEDS ; seed++ ) {
+			int[] displacements = new int[nbBuckets];
+			char[][] slots = new char[n][];
+			if ( build( keys, seed, displacements, slots ) ) {
+				this.seed = seed;
+				this.displacements = displacements;
+				this.slots = slots;
+				return;
+			}
+		}
+		throw new IllegalStateException( "No perfect hash function found for " + n + " strings" );
+	}
+
+	/**
+	 * Tests if a string is in the set.
+	 * @param term The string to test.
+	 * @return True if the string is in the set, false otherwise.
+	 */
+	public boolean contains( CharSequence term ) {
+		if ( this.slots.length == 0 ) {
+			return false;
+		}
+		long hash = this.seed;
+		for ( int i = 0 ; i < term.length() ; i++ ) {
+			hash = ( hash ^ term.charAt( i ) ) * 0x100000001B3L;
+		}
+		char[] candidate = this.slots[this.slot( hash )];
+		if ( candidate.length != term.length() ) {
+			return false;
+		}
+		for ( int i = 0 ; i < candidate.length ; i++ ) {
+			if ( candidate[i] != term.charAt( i ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Tests if a slice of a char array is in the set.
+	 * @param buffer The array containing the string.
+	 * @param offset The position of the first char of the string.
+	 * @param length The length of the string.
+	 * @return True if the string is in the set, false otherwise.
+	 */
+	public boolean contains( char[] buffer, int offset, int length ) {
+		if ( this.slots.length == 0 ) {
+			return false;
+		}
+		long hash = this.seed;
+		for ( int i = 0 ; i < length ; i++ ) {
+			hash = ( hash ^ buffer[offset + i] ) * 0x100000001B3L;
+		}
+		char[] candidate = this.slots[this.slot( hash )];
+		if ( candidate.length != length ) {
+			return false;
+		}
+		for ( int i = 0 ; i < length ; i++ ) {
+			if ( candidate[i] != buffer[offset + i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of strings in the set.
+	 * @return The size of the set.
+	 */
+	public int size() {
+		return this.slots.length;
+	}
+
+	// slot of a string, given the FNV-1a hash of its chars
+	private int slot( long hash ) {
+		hash = mix( hash );
+		int bucket = (int) ( ( hash >>> 32 ) % this.displacements.length );
+		return displace( hash, this.displacements[bucket], this.slots.length );
+	}
+
+	// finds a displacement for each bucket, largest buckets first
+	private static boolean build( String[] keys, long seed, int[] displacements, char[][] slots ) {
+		int n = keys.length;
+		long[] hashes = new long[n];
+		ArrayList<ArrayList<Integer>> buckets = new ArrayList<ArrayList<Integer>>();
+		for ( int b = 0 ; b < displacements.length ; b++ ) {
+			buckets.add( new ArrayList<Integer>() );
+		}
+		for ( int k = 0 ; k < n ; k++ ) {
+			long hash = seed;
+			for ( int i = 0 ; i < keys[k].length() ; i++ ) {
+				hash = ( hash ^ keys[k].charAt( i ) ) * 0x100000001B3L;
+			}
+			hashes[k] = mix( hash );
+			buckets.get( (int) ( ( hashes[k] >>> 32 ) % displacements.length ) ).add( k );
+		}
+
+		Integer[] order = new Integer[displacements.length];
+		for ( int b = 0 ; b < order.length ; b++ ) {
+			order[b] = b;
+		}
+		Arrays.sort( order, ( b1, b2 ) -> buckets.get( b2 ).size() - buckets.get( b1 ).size() );
+
+		boolean[] used = new boolean[n];
+		int[] bucketSlots = new int[BUCKET_SIZE * 8];
+		for ( int b : order ) {
+			ArrayList<Integer> bucket = buckets.get( b );
+			if ( bucket.isEmpty() ) {
+				break;
+			}
+			if ( bucket.size() > bucketSlots.length ) {
+				return false;
+			}
+			int displacement = -1;
+			long maxDisplacement = Math.min( (long) n * n, Integer.MAX_VALUE );
+			for ( int d = 0 ; d < maxDisplacement && displacement < 0 ; d++ ) {
+				boolean fits = true;
+				for ( int i = 0 ; i < bucket.size() && fits ; i++ ) {
+					int slot = displace( hashes[bucket.get( i )], d, n );
+					fits = !used[slot];
+					for ( int j = 0 ; j < i && fits ; j++ ) {
+						fits = bucketSlots[j] != slot;
+					}
+					bucketSlots[i] = slot;
+				}
+				if ( fits ) {
+					displacement = d;
+				}
+			}
+			if ( displacement < 0 ) {
+				return false;
+			}
+			displacements[b] = displacement;
+			for ( int i = 0 ; i < bucket.size() ; i++ ) {
+				used[bucketSlots[i]] = true;
+				slots[bucketSlots[i]] = keys[bucket.get( i )].toCharArray();
+			}
+		}
+		return true;
+	}
+
+	// slot (h1 + d0 * h2 + d1) mod n of the CHD displacement d = d0 * n + d1
+	private static int displace( long hash, int displacement, int n ) {
+		long h1 = ( hash & 0xFFFFFFFFL ) % n;
+		long h2 = ( ( hash >>> 16 ) & 0xFFFFFFFFL ) % n;
+		long d0 = displacement / n;
+		long d1 = displacement % n;
+		return (int) ( ( h1 + d0 * h2 + d1 ) % n );
+	}
+
+	// murmur3 finalizer, spreads the bits of the FNV hash
+	private static long mix( long hash ) {
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9F5A1A6B58FL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,303 @@
+package tp2.searchEngine.utils;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the stems of the surface forms of a language, shared by
+ * the stemmers of several threads. A few thousand forms cover most of the
+ * tokens of a collection, so most tokens are stemmed by a lookup instead of a
+ * run of the Snowball program.
+ * The cache is split in segments, each guarded by its own lock, and each
+ * segment evicts its entries with the CLOCK algorithm: an entry read since the
+ * hand last passed it gets a second chance.
+ * Hits, misses and evictions are counted to tune the capacity.
+ */
+public class StemCache {
+
+	/**
+	 * Maximum number of segments, a power of two.
+	 */
+	private static final int SEGMENTS = 16;
+
+	/**
+	 * Fixed-size table of (form, stem) entries with a CLOCK hand. The entries
+	 * are found through an open addressing table with linear probing, so that
+	 * a form can be looked up from a slice of a char array without creating a
+	 * string.
+	 */
+	private static final class Segment {
+
+		private final String[] forms;
+		private final String[] stems;
+		private final int[] hashes;
+		private final boolean[] referenced;
+		// entry + 1 at each position of the probing table, 0 for a free position
+		private final int[] table;
+		private final int mask;
+		private int size;
+		private int hand;
+
+		Segment( int capacity ) {
+			this.forms = new String[capacity];
+			this.stems = new String[capacity];
+			this.hashes = new int[capacity];
+			this.referenced = new boolean[capacity];
+			// at most half full
+			this.table = new int[Integer.highestOneBit( capacity ) << 2];
+			this.mask = this.table.length - 1;
+			this.size = 0;
+			this.hand = 0;
+		}
+
+		synchronized String get( char[] chars, int offset, int length, int hash ) {
+			for ( int i = this.home( hash ) ; this.table[i] != 0 ; i = ( i + 1 ) & this.mask ) {
+				int slot = this.table[i] - 1;
+				if ( this.hashes[slot] == hash && matches( this.forms[slot], chars, offset, length ) ) {
+					this.referenced[slot] = true;
+					return this.stems[slot];
+				}
+			}
+			return null;
+		}
+
+		synchronized String get( String form, int hash ) {
+			for ( int i = this.home( hash ) ; this.table[i] != 0 ; i = ( i + 1 ) & this.mask ) {
+				int slot = this.table[i] - 1;
+				if ( this.hashes[slot] == hash && this.forms[slot].equals( form ) ) {
+					this.referenced[slot] = true;
+					return this.stems[slot];
+				}
+			}
+			return null;
+		}
+
+		// returns true if an entry was evicted
+		synchronized boolean put( String form, String stem, int hash ) {
+			int i = this.home( hash );
+			for ( ; this.table[i] != 0 ; i = ( i + 1 ) & this.mask ) {
+				int slot = this.table[i] - 1;
+				if ( this.hashes[slot] == hash && this.forms[slot].equals( form ) ) {
+					return false;
+				}
+			}
+			boolean evicted = false;
+			int slot;
+			if ( this.size < this.forms.length ) {
+				slot = this.size++;
+			} else {
+				while ( this.referenced[this.hand] ) {
+					this.referenced[this.hand] = false;
+					this.hand = ( this.hand + 1 ) % this.forms.length;
+				}
+				slot = this.hand;
+				this.hand = ( this.hand + 1 ) % this.forms.length;
+				this.remove( slot );
+				evicted = true;
+				// the removal may have moved entries, look for a free position again
+				i = this.home( hash );
+				while ( this.table[i] != 0 ) {
+					i = ( i + 1 ) & this.mask;
+				}
+			}
+			this.forms[slot] = form;
+			this.stems[slot] = stem;
+			this.hashes[slot] = hash;
+			this.referenced[slot] = false;
+			this.table[i] = slot + 1;
+			return evicted;
+		}
+
+		synchronized int size() {
+			return this.size;
+		}
+
+		// frees the position of an entry, moving back the entries probed after it
+		private void remove( int slot ) {
+			int free = this.home( this.hashes[slot] );
+			while ( this.table[free] != slot + 1 ) {
+				free = ( free + 1 ) & this.mask;
+			}
+			for ( int i = ( free + 1 ) & this.mask ; this.table[i] != 0 ; i = ( i + 1 ) & this.mask ) {
+				int home = this.home( this.hashes[this.table[i] - 1] );
+				// the entry can move to the free position if its home is not after it
+				if ( ( ( i - home ) & this.mask ) >= ( ( i - free ) & this.mask ) ) {
+					this.table[free] = this.table[i];
+					free = i;
+				}
+			}
+			this.table[free] = 0;
+		}
+
+		private int home( int hash ) {
+			return Integer.rotateLeft( hash * 0x9E3779B9, 12 ) & this.mask;
+		}
+
+		private static boolean matches( String form, char[] chars, int offset, int length ) {
+			if ( form.length() != length ) {
+				return false;
+			}
+			for ( int i = 0 ; i < length ; i++ ) {
+				if ( form.charAt( i ) != chars[offset + i] ) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private final Stemmer.StemmerLanguage language;
+
+	private final int capacity;
+
+	private final Segment[] segments;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Creates an empty cache. A cache smaller than the number of segments has
+	 * fewer segments, so that each can hold at least one entry.
+	 * @param language The language of the stems stored in the cache.
+	 * @param capacity The maximum number of entries of the cache, at least 1.
+	 */
+	public StemCache( Stemmer.StemmerLanguage language, int capacity ) {
+		if ( capacity < 1 ) {
+			throw new IllegalArgumentException( "Stem cache capacity must be at least 1, got " + capacity );
+		}
+		this.language = language;
+		this.capacity = capacity;
+		this.segments = new Segment[Math.min( SEGMENTS, Integer.highestOneBit( capacity ) )];
+		// the remainder of the division goes to the first segments, one entry each
+		for ( int i = 0 ; i < this.segments.length ; i++ ) {
+			this.segments[i] = new Segment( capacity / this.segments.length + ( i < capacity % this.segments.length ? 1 : 0 ) );
+		}
+	}
+
+	/**
+	 * Returns the stem of a form if it is in the cache.
+	 * @param form The form to look up.
+	 * @return The stem of the form, or null if it is not in the cache.
+	 */
+	public String get( String form ) {
+		int hash = form.hashCode();
+		String stem = this.segmentOf( hash ).get( form, hash );
+		if ( stem == null ) {
+			this.misses.increment();
+		} else {
+			this.hits.increment();
+		}
+		return stem;
+	}
+
+	/**
+	 * Returns the stem of a form given as a slice of a char array if it is in
+	 * the cache, without creating a string.
+	 * @param chars The array containing the form.
+	 * @param offset The position of the first char of the form.
+	 * @param length The length of the form.
+	 * @return The stem of the form, or null if it is not in the cache.
+	 */
+	public String get( char[] chars, int offset, int length ) {
+		// same hash as the string of the form
+		int hash = 0;
+		for ( int i = offset ; i < offset + length ; i++ ) {
+			hash = 31 * hash + chars[i];
+		}
+		String stem = this.segmentOf( hash ).get( chars, offset, length, hash );
+		if ( stem == null ) {
+			this.misses.increment();
+		} else {
+			this.hits.increment();
+		}
+		return stem;
+	}
+
+	/**
+	 * Stores the stem of a form, evicting an entry if the cache is full.
+	 * @param form The form.
+	 * @param stem The stem of the form.
+	 */
+	public void put( String form, String stem ) {
+		int hash = form.hashCode();
+		if ( this.segmentOf( hash ).put( form, stem, hash ) ) {
+			this.evictions.increment();
+		}
+	}
+
+	/**
+	 * Returns the language of the stems stored in the cache.
+	 * @return The language of the cache.
+	 */
+	public Stemmer.StemmerLanguage getLanguage() {
+		return this.language;
+	}
+
+	/**
+	 * Returns the maximum number of entries of the cache, the sum of the
+	 * capacities of its segments.
+	 * @return The capacity of the cache.
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Returns the number of entries in the cache.
+	 * @return The number of cached forms.
+	 */
+	public int size() {
+		int size = 0;
+		for ( Segment segment : this.segments ) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of lookups that found their form.
+	 * @return The number of hits.
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that did not find their form.
+	 * @return The number of misses.
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * Returns the number of entries evicted to make room for new forms.
+	 * @return The number of evictions.
+	 */
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+
+	/**
+	 * Returns the ratio of lookups that found their form.
+	 * @return The hit rate, between 0 and 1, or 0 before the first lookup.
+	 */
+	public double getHitRate() {
+		long hits = this.hits.sum();
+		long lookups = hits + this.misses.sum();
+		return lookups == 0 ? 0.0 : (double) hits / (double) lookups;
+	}
+
+	@Override
+	public String toString() {
+		return String.format( Locale.ROOT, "StemCache[%s, %d/%d entries, hit rate %.1f%%, %d evictions]", this.language, this.size(),
+				this.capacity, 100 * this.getHitRate(), this.getEvictions() );
+	}
+
+	private Segment segmentOf( int hash ) {
+		return this.segments[( ( hash * 0x9E3779B9 ) >>> 16 ) & ( this.segments.length - 1 )];
+	}
+}
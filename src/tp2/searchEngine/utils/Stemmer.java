@@ -1,6 +1,10 @@
 package tp2.searchEngine.utils;
 
+import java.util.function.Supplier;
+
 import tp2.searchEngine.utils.stemmer.org.tartarus.snowball.SnowballStemmer;
+import tp2.searchEngine.utils.stemmer.org.tartarus.snowball.ext.frenchStemmer;
+import tp2.searchEngine.utils.stemmer.org.tartarus.snowball.ext.porterStemmer;
 
 /**
  * Multilingual stemmer.
@@ -9,38 +13,39 @@ import tp2.searchEngine.utils.stemmer.org.tartarus.snowball.SnowballStemmer;
  * @author Pierre Tirilly - pierre.tirilly@telecom-lille.fr
  *
  */
-public class Stemmer {
+public class Stemmer implements Analyzer.TokenFilter {
 
 	/**
-	 * Available language and path to their classes.
+	 * Available languages and the constructors of their stemmers, null if the
+	 * stemmer of the language is not shipped.
 	 * @author Pierre Tirilly - pierre.tirilly@telecom-lille.fr
 	 * 
 	 */
 	public enum StemmerLanguage {
-			DANISH("searchEngine.utils.stemmer.org.tartarus.snowball.ext.danishStemmer"),
-			DUTCH("searchEngine.utils.stemmer.org.tartarus.snowball.ext.dutchStemmer"),
-			ENGLISH("tp2.searchEngine.utils.stemmer.org.tartarus.snowball.ext.porterStemmer"),
-			FINNISH("searchEngine.utils.stemmer.org.tartarus.snowball.ext.finnishStemmer"),
-			FRENCH("tp2.searchEngine.utils.stemmer.org.tartarus.snowball.ext.frenchStemmer"),
-			GERMAN("searchEngine.utils.stemmer.org.tartarus.snowball.ext.germanStemmer"), 
-			HUNGARIAN("searchEngine.utils.stemmer.org.tartarus.snowball.ext.hungarianStemmer"), 
-			ITALIAN("searchEngine.utils.stemmer.org.tartarus.snowball.ext.italianStemmer"),
-			NORWEGIAN("searchEngine.utils.stemmer.org.tartarus.snowball.ext.norwegianStemmer"), 
-			PORTUGUESE("searchEngine.utils.stemmer.org.tartarus.snowball.ext.portugueseStemmer"),
-			ROMANIAN("searchEngine.utils.stemmer.org.tartarus.snowball.ext.romanianStemmer"),
-			RUSSIAN("searchEngine.utils.stemmer.org.tartarus.snowball.ext.russianStemmer"), 
-			SPANISH("searchEngine.utils.stemmer.org.tartarus.snowball.ext.spanishStemmer"),
-			SWEDISH("searchEngine.utils.stemmer.org.tartarus.snowball.ext.swedishStemmer"), 
-			TURKISH("searchEngine.utils.stemmer.org.tartarus.snowball.ext.turkishStemmer");
+			DANISH(null),
+			DUTCH(null),
+			ENGLISH(porterStemmer::new),
+			FINNISH(null),
+			FRENCH(frenchStemmer::new),
+			GERMAN(null), 
+			HUNGARIAN(null), 
+			ITALIAN(null),
+			NORWEGIAN(null), 
+			PORTUGUESE(null),
+			ROMANIAN(null),
+			RUSSIAN(null), 
+			SPANISH(null),
+			SWEDISH(null), 
+			TURKISH(null);
 		
-			private String className;
+			private Supplier<SnowballStemmer> factory;
 			
-			StemmerLanguage( String className ) {
-				this.className = className;
+			StemmerLanguage( Supplier<SnowballStemmer> factory ) {
+				this.factory = factory;
 			}
 			
-			String getClassName() {
-				return this.className;
+			Supplier<SnowballStemmer> getFactory() {
+				return this.factory;
 			}
 	};
 	
@@ -48,20 +53,34 @@ public class Stemmer {
 	
 	private StemmerLanguage language;
 	
+	private StemCache cache;
+	
 	/**
 	 * Creates a new stemmer for the provided language.
 	 * Example of use: new Stemmer( Stemmer.StemmerLanguage.FRENCH )
 	 * @param language The language handled by the stemmer.
 	 */
 	public Stemmer( StemmerLanguage language ) {
+		this( language, null );
+	}
+	
+	/**
+	 * Creates a new stemmer for the provided language, looking up the stems in
+	 * a cache before running the stemming algorithm. The cache can be shared by
+	 * the stemmers of several threads.
+	 * @param language The language handled by the stemmer.
+	 * @param cache The cache of stems for the language, null to stem every token.
+	 */
+	public Stemmer( StemmerLanguage language, StemCache cache ) {
+		if ( cache != null && cache.getLanguage() != language ) {
+			throw new IllegalArgumentException( "Stem cache for " + cache.getLanguage() + " used by a stemmer for " + language );
+		}
 		this.language = language;
-		try {
-			this.stemmer = (SnowballStemmer)(Class.forName(this.language.getClassName())
-												.getConstructor().newInstance());
-		} catch ( Exception e ) {
-			System.err.println( "Error: unable to load stemmer class. Please your packages"
-					+ "and their folder hierarchy.");
-			e.printStackTrace();
+		this.cache = cache;
+		if ( this.language.getFactory() != null ) {
+			this.stemmer = this.language.getFactory().get();
+		} else {
+			System.err.println( "Error: no stemmer available for " + this.language + "." );
 			this.stemmer = null;
 		}
 	}
@@ -72,9 +91,54 @@ public class Stemmer {
 	 * @return The token after stemming.
 	 */
 	public String stem( String token ) {
+		String stem;
+		if ( this.cache != null && ( stem = this.cache.get( token ) ) != null ) {
+			return stem;
+		}
 		this.stemmer.setCurrent( token );
 		this.stemmer.stem();
-		return this.stemmer.getCurrent().trim();
+		stem = this.stemmer.getCurrent().trim();
+		if ( this.cache != null ) {
+			this.cache.put( token, stem );
+		}
+		return stem;
+	}
+	
+	/**
+	 * Stems the token in place, for use in an Analyzer.
+	 * @param token The token to stem.
+	 * @return Always true, stemming keeps every token.
+	 */
+	@Override
+	public boolean accept( Analyzer.Token token ) {
+		// the cache is looked up and the token stemmed from its char buffer,
+		// strings are only created to store a new entry in the cache
+		if ( this.cache != null ) {
+			String stem = this.cache.get( token.buffer(), 0, token.length() );
+			if ( stem != null ) {
+				token.setTerm( stem );
+				return true;
+			}
+		}
+		this.stemmer.setCurrent( token.buffer(), 0, token.length() );
+		this.stemmer.stem();
+		char[] stem = this.stemmer.getCurrentBuffer();
+		int start = 0;
+		int end = this.stemmer.getCurrentBufferLength();
+		while ( start < end && stem[start] <= ' ' ) {
+			start++;
+		}
+		while ( end > start && stem[end - 1] <= ' ' ) {
+			end--;
+		}
+		if ( this.cache != null ) {
+			String term = new String( stem, start, end - start );
+			this.cache.put( token.term(), term );
+			token.setTerm( term );
+			return true;
+		}
+		token.setTerm( stem, start, end - start );
+		return true;
 	}
 	
 	/**
@@ -3,18 +3,19 @@ package tp2.searchEngine.utils;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.Vector;
+import java.util.ArrayList;
 
 /**
  * Class for stop-list management.
+ * The stop words are stored in a minimal perfect hash table built when the
+ * file is read, so tokens can be tested as any CharSequence or as a slice of
+ * a char array without creating a string.
  * @author Pierre Tirilly
  *
  */
-public class StopList {
+public class StopList implements Analyzer.TokenFilter {
 
-	private Set<String> stopWords;
+	private PerfectHashSet stopWords;
 	
 	/**
 	 * Creates a new stop list contained in the given file.
@@ -34,6 +35,36 @@ public class StopList {
 		return this.stopWords.contains( term );
 	}
 	
+	/**
+	 * Tests if a term is in the stop-list
+	 * @param term The term to test
+	 * @return True if the term is in the stop-list, false otherwise.
+	 */
+	public boolean contains( CharSequence term ) {
+		return this.stopWords.contains( term );
+	}
+	
+	/**
+	 * Tests if a term given as a slice of a char array is in the stop-list
+	 * @param buffer The array containing the term
+	 * @param offset The position of the first char of the term
+	 * @param length The length of the term
+	 * @return True if the term is in the stop-list, false otherwise.
+	 */
+	public boolean contains( char[] buffer, int offset, int length ) {
+		return this.stopWords.contains( buffer, offset, length );
+	}
+	
+	/**
+	 * Drops the token if it is a stop word, for use in an Analyzer.
+	 * @param token The token to test.
+	 * @return False if the token is in the stop-list, true otherwise.
+	 */
+	@Override
+	public boolean accept( Analyzer.Token token ) {
+		return !this.contains( token.buffer(), 0, token.length() );
+	}
+	
 	/**
 	 * Filters out stop words from a list of terms.
 	 * @param terms The list of terms to filter out.
@@ -41,7 +72,7 @@ public class StopList {
 	 */
 	public String[] filter( String[] terms ) {
 		
-		Vector<String> filteredTerms = new Vector<String>();
+		ArrayList<String> filteredTerms = new ArrayList<String>();
 		
 		for ( String s : terms ) {
 			if ( !this.contains( s ) ) {
@@ -52,11 +83,11 @@ public class StopList {
 		return filteredTerms.toArray( new String[filteredTerms.size()] );
 	}
 	
-	private Set<String> readStopListFile( String fileName ) {
+	private PerfectHashSet readStopListFile( String fileName ) {
 		
 		BufferedReader reader;
 		String currentWord;
-		Set<String> stopWords = new HashSet<>();
+		ArrayList<String> stopWords = new ArrayList<String>();
 		
 		try {
 			reader = new BufferedReader( new FileReader(fileName) );
@@ -69,6 +100,6 @@ public class StopList {
 			ioe.printStackTrace();
 		}
 		
-		return stopWords;
+		return new PerfectHashSet( stopWords );
 	}
 }
@@ -1,11 +1,18 @@
 package tp2.searchEngine.utils;
 
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * A quick tokenizer for natural text data.
  * Separators can be expressed as a string containing a list of chars
  * or as a regular expression.
+ * A list of chars is stored as a bitset, so tokenizing walks the text once
+ * without any regular expression; a regular expression is compiled once.
+ * Tokens can be returned as an array of strings or read one at a time from a
+ * reusable TokenStream, which gives each token as a slice of a char buffer.
  * @author Pierre Tirilly - pierre.tirilly@telecom-lille.fr
  *
  */
@@ -14,8 +21,15 @@ public class Tokenizer {
 	// List of special characters to be escaped when translating lists of separators to a regex
 	private static final char[] REGEX_SPECIAL_CHARS = { '+', '-', '*', '|', '&', '[', ']', '(', ')', '{', '}', '^', '?' };
 	
+	private static final Locale LOCALE = Locale.forLanguageTag( "en" );
+	
 	private String separatorsRegex;
 	
+	private Pattern separatorsPattern;
+	
+	// Bitset of the separator chars, null if the separators are a regex
+	private long[] separatorBits;
+	
 	/**
 	 * Creates a tokenizer instance with separators given as a list (string) of characters.
 	 * @param separators A string containing the separators.
@@ -33,9 +47,12 @@ public class Tokenizer {
 	public Tokenizer( String separators, boolean regexSeparators ) {
 		if ( regexSeparators ) {
 			this.separatorsRegex = separators;
+			this.separatorBits = null;
 		} else {
 			this.separatorsRegex = this.compileSeparatorsToRegex( separators );
+			this.separatorBits = this.compileSeparatorsToBitset( separators );
 		}
+		this.separatorsPattern = Pattern.compile( this.separatorsRegex );
 	}
 	
 	/**
@@ -44,9 +61,229 @@ public class Tokenizer {
 	 * @return Array of tokens.
 	 */
 	public String[] tokenize( String text ) {
-		return text.split( this.separatorsRegex );
+		return this.tokenize( text, false );
 	}
-
+	
+	/**
+	 * Tokenizes a string into an array of strings according to the tokenizer's
+	 * separators, with the same tokens as String.split on the separators.
+	 * @param text The string to tokenize.
+	 * @param lowerCase True to lowercase the tokens.
+	 * @return Array of tokens.
+	 */
+	public String[] tokenize( String text, boolean lowerCase ) {
+		if ( this.separatorBits == null ) {
+			return this.separatorsPattern.split( lowerCase ? text.toLowerCase( LOCALE ) : text );
+		}
+		if ( text.isEmpty() ) {
+			return new String[] { text };
+		}
+		
+		ArrayList<String> tokens = new ArrayList<String>();
+		TokenStream stream = this.tokenStream( lowerCase ).reset( text );
+		while ( stream.next() ) {
+			tokens.add( stream.term() );
+		}
+		// like split, a leading separator gives an empty first token, unless there is no other token
+		if ( !tokens.isEmpty() && this.isSeparator( text.charAt( 0 ) ) ) {
+			tokens.add( 0, "" );
+		}
+		
+		return tokens.toArray( new String[tokens.size()] );
+	}
+	
+	/**
+	 * Creates a reusable stream over the tokens of texts. A stream is not
+	 * thread-safe, each thread must use its own stream.
+	 * @param lowerCase True to lowercase the tokens.
+	 * @return A new token stream.
+	 */
+	public TokenStream tokenStream( boolean lowerCase ) {
+		return new TokenStream( lowerCase );
+	}
+	
+	/**
+	 * Iterator over the non-empty tokens of a text. The current token is given
+	 * as a slice of a char buffer that is reused for the next tokens, so reading
+	 * a token does not allocate unless term() is called.
+	 * Tokens are lowercased char by char with Character.toLowerCase, which only
+	 * differs from String.toLowerCase for context-dependent rules such as the
+	 * final Greek sigma.
+	 */
+	public class TokenStream {
+		
+		private final boolean lowerCase;
+		
+		private CharSequence text;
+		
+		private Matcher matcher;
+		
+		private int position;
+		
+		private char[] buffer = new char[32];
+		
+		private int length;
+		
+		private int startOffset;
+		
+		private int endOffset;
+		
+		private TokenStream( boolean lowerCase ) {
+			this.lowerCase = lowerCase;
+		}
+		
+		/**
+		 * Starts reading the tokens of a text.
+		 * @param text The text to tokenize.
+		 * @return This stream.
+		 */
+		public TokenStream reset( CharSequence text ) {
+			this.text = text;
+			this.position = 0;
+			this.length = 0;
+			this.startOffset = 0;
+			this.endOffset = 0;
+			if ( separatorBits == null ) {
+				if ( this.matcher == null ) {
+					this.matcher = separatorsPattern.matcher( text );
+				} else {
+					this.matcher.reset( text );
+				}
+			}
+			return this;
+		}
+		
+		/**
+		 * Moves to the next token of the text.
+		 * @return True if there is a token, false at the end of the text.
+		 */
+		public boolean next() {
+			int textLength = this.text.length();
+			
+			if ( separatorBits == null ) {
+				int start;
+				int end;
+				do {
+					start = this.position;
+					if ( start > textLength ) {
+						return false;
+					}
+					if ( this.matcher.find() ) {
+						end = this.matcher.start();
+						this.position = this.matcher.end();
+					} else {
+						end = textLength;
+						this.position = textLength + 1;
+					}
+				} while ( start == end );
+				return this.read( start, end );
+			}
+			
+			int start = this.position;
+			while ( start < textLength && isSeparator( this.text.charAt( start ) ) ) {
+				start++;
+			}
+			if ( start == textLength ) {
+				this.position = textLength;
+				return false;
+			}
+			int end = start + 1;
+			while ( end < textLength && !isSeparator( this.text.charAt( end ) ) ) {
+				end++;
+			}
+			this.position = end;
+			return this.read( start, end );
+		}
+		
+		/**
+		 * Returns the buffer holding the current token, from index 0.
+		 * @return The token buffer.
+		 */
+		public char[] buffer() {
+			return this.buffer;
+		}
+		
+		/**
+		 * Returns the length of the current token.
+		 * @return The number of chars of the token in the buffer.
+		 */
+		public int length() {
+			return this.length;
+		}
+		
+		/**
+		 * Returns the position of the current token in the text.
+		 * @return The index of the first char of the token.
+		 */
+		public int startOffset() {
+			return this.startOffset;
+		}
+		
+		/**
+		 * Returns the end of the current token in the text.
+		 * @return The index following the last char of the token.
+		 */
+		public int endOffset() {
+			return this.endOffset;
+		}
+		
+		/**
+		 * Returns the current token as a new string.
+		 * @return The token.
+		 */
+		public String term() {
+			return new String( this.buffer, 0, this.length );
+		}
+		
+		// copies text[start, end) to the buffer, lowercasing it if needed
+		private boolean read( int start, int end ) {
+			if ( end - start > this.buffer.length ) {
+				this.buffer = new char[Math.max( end - start, this.buffer.length << 1 )];
+			}
+			this.length = 0;
+			for ( int i = start ; i < end ; i++ ) {
+				char c = this.text.charAt( i );
+				if ( this.lowerCase ) {
+					if ( c < 128 ) {
+						if ( c >= 'A' && c <= 'Z' ) {
+							c += 'a' - 'A';
+						}
+					} else if ( Character.isHighSurrogate( c ) && i + 1 < end && Character.isLowSurrogate( this.text.charAt( i + 1 ) ) ) {
+						int codePoint = Character.toLowerCase( Character.toCodePoint( c, this.text.charAt( ++i ) ) );
+						this.length += Character.toChars( codePoint, this.buffer, this.length );
+						continue;
+					} else {
+						c = Character.toLowerCase( c );
+					}
+				}
+				this.buffer[this.length++] = c;
+			}
+			this.startOffset = start;
+			this.endOffset = end;
+			return true;
+		}
+	}
+	
+	private boolean isSeparator( char c ) {
+		int word = c >>> 6;
+		return word < this.separatorBits.length && ( this.separatorBits[word] & ( 1L << c ) ) != 0;
+	}
+	
+	private long[] compileSeparatorsToBitset( String separators ) {
+		char max = 0;
+		for ( int i = 0 ; i < separators.length() ; i++ ) {
+			max = (char) Math.max( max, separators.charAt( i ) );
+		}
+		
+		long[] bits = new long[( max >>> 6 ) + 1];
+		for ( int i = 0 ; i < separators.length() ; i++ ) {
+			char c = separators.charAt( i );
+			bits[c >>> 6] |= 1L << c;
+		}
+		
+		return bits;
+	}
+	
 	private String compileSeparatorsToRegex( String separators ) {
 		String regex = "[";
 		
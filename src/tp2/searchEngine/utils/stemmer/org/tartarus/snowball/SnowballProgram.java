@@ -1,11 +1,10 @@
 
 package tp2.searchEngine.utils.stemmer.org.tartarus.snowball;
-import java.lang.reflect.InvocationTargetException;
 
 public class SnowballProgram {
     protected SnowballProgram()
     {
-	current = new StringBuffer();
+	current = new char[INITIAL_CAPACITY];
 	setCurrent("");
     }
 
@@ -14,12 +13,23 @@ public class SnowballProgram {
      */
     public void setCurrent(String value)
     {
-	current.replace(0, current.length(), value);
-	cursor = 0;
-	limit = current.length();
-	limit_backward = 0;
-	bra = cursor;
-	ket = limit;
+	int value_length = value.length();
+	reserve(value_length);
+	value.getChars(0, value_length, current, 0);
+	reset(value_length);
+    }
+
+    /**
+     * Set the current string from a slice of a char array.
+     * @param text The array containing the string
+     * @param offset The position of the first char of the string
+     * @param text_length The length of the string
+     */
+    public void setCurrent(char[] text, int offset, int text_length)
+    {
+	reserve(text_length);
+	System.arraycopy(text, offset, current, 0, text_length);
+	reset(text_length);
     }
 
     /**
@@ -28,19 +38,50 @@ public class SnowballProgram {
      */
     public String getCurrent()
     {
-        String result = current.toString();
-        // Make a new StringBuffer.  If we reuse the old one, and a user of
-        // the library keeps a reference to the buffer returned (for example,
-        // by converting it to a String in a way which doesn't force a copy),
-        // the buffer size will not decrease, and we will risk wasting a large
-        // amount of memory.
-        // Thanks to Wolfram Esser for spotting this problem.
-        current = new StringBuffer();
-        return result;
+	return new String(current, 0, length);
+    }
+
+    /**
+     * Get the buffer holding the current string, from index 0. The buffer is
+     * reused by the next calls to setCurrent, it must be copied to be kept.
+     * @return The current buffer
+     */
+    public char[] getCurrentBuffer()
+    {
+	return current;
+    }
+
+    /**
+     * Get the length of the current string in the current buffer.
+     * @return The current length
+     */
+    public int getCurrentBufferLength()
+    {
+	return length;
+    }
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private void reserve(int capacity)
+    {
+	if (capacity > current.length) {
+	    current = new char[Math.max(capacity, current.length << 1)];
+	}
+    }
+
+    private void reset(int current_length)
+    {
+	length = current_length;
+	cursor = 0;
+	limit = length;
+	limit_backward = 0;
+	bra = cursor;
+	ket = limit;
     }
 
-    // current string
-    protected StringBuffer current;
+    // current string, in a buffer reused from one string to the next
+    protected char[] current;
+    protected int length;
 
     protected int cursor;
     protected int limit;
@@ -51,6 +92,7 @@ public class SnowballProgram {
     protected void copy_from(SnowballProgram other)
     {
 	current          = other.current;
+	length           = other.length;
 	cursor           = other.cursor;
 	limit            = other.limit;
 	limit_backward   = other.limit_backward;
@@ -61,7 +103,7 @@ public class SnowballProgram {
     protected boolean in_grouping(char [] s, int min, int max)
     {
 	if (cursor >= limit) return false;
-	char ch = current.charAt(cursor);
+	char ch = current[cursor];
 	if (ch > max || ch < min) return false;
 	ch -= min;
 	if ((s[ch >> 3] & (0X1 << (ch & 0X7))) == 0) return false;
@@ -72,7 +114,7 @@ public class SnowballProgram {
     protected boolean in_grouping_b(char [] s, int min, int max)
     {
 	if (cursor <= limit_backward) return false;
-	char ch = current.charAt(cursor - 1);
+	char ch = current[cursor - 1];
 	if (ch > max || ch < min) return false;
 	ch -= min;
 	if ((s[ch >> 3] & (0X1 << (ch & 0X7))) == 0) return false;
@@ -83,7 +125,7 @@ public class SnowballProgram {
     protected boolean out_grouping(char [] s, int min, int max)
     {
 	if (cursor >= limit) return false;
-	char ch = current.charAt(cursor);
+	char ch = current[cursor];
 	if (ch > max || ch < min) {
 	    cursor++;
 	    return true;
@@ -99,7 +141,7 @@ public class SnowballProgram {
     protected boolean out_grouping_b(char [] s, int min, int max)
     {
 	if (cursor <= limit_backward) return false;
-	char ch = current.charAt(cursor - 1);
+	char ch = current[cursor - 1];
 	if (ch > max || ch < min) {
 	    cursor--;
 	    return true;
@@ -115,7 +157,7 @@ public class SnowballProgram {
     protected boolean in_range(int min, int max)
     {
 	if (cursor >= limit) return false;
-	char ch = current.charAt(cursor);
+	char ch = current[cursor];
 	if (ch > max || ch < min) return false;
 	cursor++;
 	return true;
@@ -124,7 +166,7 @@ public class SnowballProgram {
     protected boolean in_range_b(int min, int max)
     {
 	if (cursor <= limit_backward) return false;
-	char ch = current.charAt(cursor - 1);
+	char ch = current[cursor - 1];
 	if (ch > max || ch < min) return false;
 	cursor--;
 	return true;
@@ -133,7 +175,7 @@ public class SnowballProgram {
     protected boolean out_range(int min, int max)
     {
 	if (cursor >= limit) return false;
-	char ch = current.charAt(cursor);
+	char ch = current[cursor];
 	if (!(ch > max || ch < min)) return false;
 	cursor++;
 	return true;
@@ -142,7 +184,7 @@ public class SnowballProgram {
     protected boolean out_range_b(int min, int max)
     {
 	if (cursor <= limit_backward) return false;
-	char ch = current.charAt(cursor - 1);
+	char ch = current[cursor - 1];
 	if(!(ch > max || ch < min)) return false;
 	cursor--;
 	return true;
@@ -153,7 +195,7 @@ public class SnowballProgram {
 	if (limit - cursor < s_size) return false;
 	int i;
 	for (i = 0; i != s_size; i++) {
-	    if (current.charAt(cursor + i) != s.charAt(i)) return false;
+	    if (current[cursor + i] != s.charAt(i)) return false;
 	}
 	cursor += s_size;
 	return true;
@@ -164,7 +206,7 @@ public class SnowballProgram {
 	if (cursor - limit_backward < s_size) return false;
 	int i;
 	for (i = 0; i != s_size; i++) {
-	    if (current.charAt(cursor - s_size + i) != s.charAt(i)) return false;
+	    if (current[cursor - s_size + i] != s.charAt(i)) return false;
 	}
 	cursor -= s_size;
 	return true;
@@ -203,7 +245,7 @@ public class SnowballProgram {
 		    diff = -1;
 		    break;
 		}
-		diff = current.charAt(c + common) - w.s[i2];
+		diff = current[c + common] - w.s[i2];
 		if (diff != 0) break;
 		common++;
 	    }
@@ -231,18 +273,7 @@ public class SnowballProgram {
 	    if (common_i >= w.s_size) {
 		cursor = c + w.s_size;
 		if (w.method == null) return w.result;
-		boolean res;
-		try {
-		    Object resobj = w.method.invoke(w.methodobject,
-						    new Object[0]);
-		    res = resobj.toString().equals("true");
-		} catch (InvocationTargetException e) {
-		    res = false;
-		    // FIXME - debug message
-		} catch (IllegalAccessException e) {
-		    res = false;
-		    // FIXME - debug message
-		}
+		boolean res = w.method.call(this);
 		cursor = c + w.s_size;
 		if (res) return w.result;
 	    }
@@ -276,7 +307,7 @@ public class SnowballProgram {
 		    diff = -1;
 		    break;
 		}
-		diff = current.charAt(c - 1 - common) - w.s[i2];
+		diff = current[c - 1 - common] - w.s[i2];
 		if (diff != 0) break;
 		common++;
 	    }
@@ -300,18 +331,7 @@ public class SnowballProgram {
 		cursor = c - w.s_size;
 		if (w.method == null) return w.result;
 
-		boolean res;
-		try {
-		    Object resobj = w.method.invoke(w.methodobject,
-						    new Object[0]);
-		    res = resobj.toString().equals("true");
-		} catch (InvocationTargetException e) {
-		    res = false;
-		    // FIXME - debug message
-		} catch (IllegalAccessException e) {
-		    res = false;
-		    // FIXME - debug message
-		}
+		boolean res = w.method.call(this);
 		cursor = c - w.s_size;
 		if (res) return w.result;
 	    }
@@ -326,7 +346,18 @@ public class SnowballProgram {
     protected int replace_s(int c_bra, int c_ket, String s)
     {
 	int adjustment = s.length() - (c_ket - c_bra);
-	current.replace(c_bra, c_ket, s);
+	if (adjustment != 0) {
+	    if (length + adjustment > current.length) {
+		char[] grown = new char[Math.max(length + adjustment, current.length << 1)];
+		System.arraycopy(current, 0, grown, 0, c_bra);
+		System.arraycopy(current, c_ket, grown, c_ket + adjustment, length - c_ket);
+		current = grown;
+	    } else {
+		System.arraycopy(current, c_ket, current, c_ket + adjustment, length - c_ket);
+	    }
+	}
+	s.getChars(0, s.length(), current, c_bra);
+	length += adjustment;
 	limit += adjustment;
 	if (cursor >= c_ket) cursor += adjustment;
 	else if (cursor > c_bra) cursor = c_bra;
@@ -338,7 +369,7 @@ public class SnowballProgram {
 	if (bra < 0 ||
 	    bra > ket ||
 	    ket > limit ||
-	    limit > current.length())   // this line could be removed
+	    limit > length)   // this line could be removed
 	{
 	    System.err.println("faulty slice operation");
 	// FIXME: report error somehow.
@@ -382,8 +413,8 @@ public class SnowballProgram {
     protected StringBuffer slice_to(StringBuffer s)
     {
 	slice_check();
-	int len = ket - bra;
-	s.replace(0, s.length(), current.substring(bra, ket));
+	s.setLength(0);
+	s.append(current, bra, ket - bra);
 	return s;
     }
 
@@ -391,20 +422,22 @@ public class SnowballProgram {
     protected StringBuilder slice_to(StringBuilder s)
     {
 	slice_check();
-	int len = ket - bra;
-	s.replace(0, s.length(), current.substring(bra, ket));
+	s.setLength(0);
+	s.append(current, bra, ket - bra);
 	return s;
     }
 
     protected StringBuffer assign_to(StringBuffer s)
     {
-	s.replace(0, s.length(), current.substring(0, limit));
+	s.setLength(0);
+	s.append(current, 0, limit);
 	return s;
     }
 
     protected StringBuilder assign_to(StringBuilder s)
     {
-	s.replace(0, s.length(), current.substring(0, limit));
+	s.setLength(0);
+	s.append(current, 0, limit);
 	return s;
     }
 